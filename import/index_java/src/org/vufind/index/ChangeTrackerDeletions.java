@@ -0,0 +1,237 @@
+package org.vufind.index;
+/**
+ * Bulk marking of deleted records in the change tracker.
+ *
+ * Copyright (C) Villanova University 2026.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.apache.log4j.Logger;
+
+/**
+ * Bulk marking of deleted records in the change tracker.
+ *
+ * Works like the change tracker's markDeleted() in VuFind's PHP code, for
+ * many ids at once: a record without a row gets one with its first and last
+ * indexed dates and its deletion date set to now, a record that is not deleted
+ * yet gets a deletion date, and a record that is already deleted is left alone
+ * (so running the same list twice changes nothing). Like in PHP, the dates are
+ * the current UTC time. Ids are processed in batches of BATCH_SIZE, each with IN
+ * (...) selects and batched updates and inserts in one transaction, so a file
+ * of any size is streamed in constant memory.
+ *
+ * Usage (see CommandLineTool for the class path; the file has one id per line):
+ * java ... org.vufind.index.ChangeTrackerDeletions file [core]
+ */
+public class ChangeTrackerDeletions
+{
+    // Initialize logging category
+    static Logger logger = Logger.getLogger(ChangeTrackerDeletions.class.getName());
+
+    // Ids per transaction:
+    private static final int BATCH_SIZE = 1000;
+
+    // Maximum number of ids per IN (...) select:
+    private static final int SELECT_CHUNK_SIZE = 100;
+
+    // Log progress every this many ids:
+    private static final long PROGRESS_INTERVAL = 100000;
+
+    private final DatabaseManager databaseManager;
+
+    // Counts:
+    private long marked = 0;
+    private long created = 0;
+    private long alreadyDeleted = 0;
+
+    /**
+     * Constructor
+     * @param databaseManager manager providing change tracker connections
+     */
+    public ChangeTrackerDeletions(DatabaseManager databaseManager)
+    {
+        this.databaseManager = databaseManager;
+    }
+
+    /**
+     * Mark the records listed in a stream (one id per line; blank lines are
+     * ignored) as deleted.
+     * @param core   core
+     * @param reader stream of ids
+     */
+    public void markDeleted(String core, BufferedReader reader) throws IOException, SQLException
+    {
+        Set<String> batch = new LinkedHashSet<>();
+        long lines = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            String id = line.trim();
+            if (id.isEmpty()) {
+                continue;
+            }
+            batch.add(id);
+            if (batch.size() >= BATCH_SIZE) {
+                markDeleted(core, batch);
+                batch.clear();
+            }
+            if (++lines % PROGRESS_INTERVAL == 0) {
+                logger.info(lines + " ids read");
+            }
+        }
+        markDeleted(core, batch);
+    }
+
+    /**
+     * Mark a batch of records as deleted in one transaction.
+     * @param core core
+     * @param ids  record ids
+     */
+    public void markDeleted(String core, Collection<String> ids) throws SQLException
+    {
+        if (ids.isEmpty()) {
+            return;
+        }
+        DatabaseStatistics statistics = databaseManager.getStatistics();
+        // (The PHP code stores UTC dates here, unlike the indexing dates.)
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now(ZoneOffset.UTC).withNano(0));
+        try (Connection db = databaseManager.getTrackerConnection()) {
+            db.setAutoCommit(false);
+            try {
+                Map<String, ChangeTrackerRow> stored = ChangeTrackerRow.select(
+                    db, core, ids, SELECT_CHUNK_SIZE, statistics
+                );
+                List<String> updates = new ArrayList<>();
+                List<ChangeTrackerRow> inserts = new ArrayList<>();
+                long skipped = 0;
+                for (String id : ids) {
+                    ChangeTrackerRow row = stored.get(id);
+                    if (row == null) {
+                        inserts.add(new ChangeTrackerRow(core, id, now, now, null, now));
+                    } else if (row.deleted == null) {
+                        updates.add(id);
+                    } else {
+                        skipped++;
+                    }
+                }
+                long updated = update(db, core, updates, now, statistics);
+                ChangeTrackerRow.insert(db, inserts, statistics);
+                db.commit();
+                marked += updated;
+                created += inserts.size();
+                alreadyDeleted += skipped + updates.size() - updated;
+            } catch (SQLException e) {
+                db.rollback();
+                throw e;
+            } finally {
+                db.setAutoCommit(true);
+            }
+        }
+    }
+
+    /**
+     * Set the deletion date of existing rows that are not deleted yet.
+     * @return number of rows changed
+     */
+    private long update(Connection db, String core, List<String> ids, Timestamp now,
+        DatabaseStatistics statistics) throws SQLException
+    {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        try (
+            PreparedStatement update = db.prepareStatement(
+                "UPDATE change_tracker SET deleted = ? WHERE core = ? AND id = ? AND deleted IS NULL"
+            )
+        ) {
+            for (String id : ids) {
+                update.setTimestamp(1, now);
+                update.setString(2, core);
+                update.setString(3, id);
+                update.addBatch();
+            }
+            long start = System.nanoTime();
+            long changed = 0;
+            for (int count : update.executeBatch()) {
+                // (Drivers that do not report counts changed every row, as
+                // all of them were selected as not deleted in this transaction.)
+                changed += count >= 0 ? count : 1;
+            }
+            statistics.record(DatabaseStatistics.Operation.UPDATE, start, changed);
+            return changed;
+        }
+    }
+
+    /**
+     * Get the number of existing rows marked as deleted.
+     */
+    public long getMarked()
+    {
+        return marked;
+    }
+
+    /**
+     * Get the number of rows created for ids that had none.
+     */
+    public long getCreated()
+    {
+        return created;
+    }
+
+    /**
+     * Get the number of ids that were already marked as deleted.
+     */
+    public long getAlreadyDeleted()
+    {
+        return alreadyDeleted;
+    }
+
+    public static void main(String[] args) throws Exception
+    {
+        if (args.length < 1 || args.length > 2) {
+            CommandLineTool.exitWithUsage("Usage: ChangeTrackerDeletions file [core]");
+        }
+        String core = args.length > 1 ? args[1] : "biblio";
+        CommandLineTool.initialize();
+        DatabaseManager manager = DatabaseManager.instance();
+        ChangeTrackerDeletions deletions = new ChangeTrackerDeletions(manager);
+        long start = System.currentTimeMillis();
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(args[0]), StandardCharsets.UTF_8)) {
+            deletions.markDeleted(core, reader);
+        }
+        logger.info(
+            "Core " + core + ": " + deletions.getMarked() + " records marked as deleted, "
+            + deletions.getCreated() + " deleted records added, " + deletions.getAlreadyDeleted()
+            + " already deleted, in " + (System.currentTimeMillis() - start) + " ms"
+        );
+        manager.shutdown();
+    }
+}
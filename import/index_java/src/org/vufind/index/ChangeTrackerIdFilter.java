@@ -0,0 +1,150 @@
+package org.vufind.index;
+/**
+ * Bloom filter of the record ids in the change tracker of one core.
+ *
+ * Copyright (C) Villanova University 2026.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicLongArray;
+import org.apache.log4j.Logger;
+
+/**
+ * Bloom filter of the record ids in the change tracker of one core.
+ *
+ * On initial loads nearly every record is new, and reading its (missing) row
+ * before inserting it doubles the database round trips. The ids of a core are
+ * streamed into this filter at startup; an id the filter has never seen has no
+ * row, so its row can be inserted without reading it first. An id the filter
+ * may have seen (about 1% of new ids, at the expected size) is read as usual.
+ * The filter takes about 1.2 bytes per id, a fraction of a full preload.
+ *
+ * The filter only knows the rows that existed when it was loaded plus those
+ * added through it, so rows inserted by other processes meanwhile can still
+ * turn up when inserting: UpdateDateTracker then falls back to reading them.
+ * (The write-behind queue and journal update such rows instead of inserting
+ * them, keeping their first indexed date.)
+ */
+public class ChangeTrackerIdFilter
+{
+    // Initialize logging category
+    static Logger logger = Logger.getLogger(ChangeTrackerIdFilter.class.getName());
+
+    // Bits per expected id and bits set per id (1% false positives):
+    private static final int BITS_PER_ID = 10;
+    private static final int HASHES = 7;
+
+    private final AtomicLongArray words;
+    private final long bits;
+
+    /**
+     * Constructor
+     * @param expectedIds number of ids to make room for (before headroom)
+     */
+    public ChangeTrackerIdFilter(long expectedIds)
+    {
+        long wanted = (expectedIds + expectedIds / 4 + 1024) * BITS_PER_ID;
+        int wordCount = (int)Math.min((wanted + 63) / 64, Integer.MAX_VALUE - 8);
+        words = new AtomicLongArray(wordCount);
+        bits = (long)wordCount * 64;
+    }
+
+    /**
+     * Stream the ids of a core into a new filter.
+     * @param db         database connection
+     * @param core       core to load
+     * @param statistics statistics to record the selects in
+     */
+    public static ChangeTrackerIdFilter load(Connection db, String core, DatabaseStatistics statistics)
+        throws SQLException
+    {
+        long startTime = System.currentTimeMillis();
+        ChangeTrackerIdFilter filter = new ChangeTrackerIdFilter(ChangeTrackerRow.count(db, core, statistics));
+        long rows = ChangeTrackerRow.stream(
+            db, "SELECT id FROM change_tracker WHERE core = ?", statistics,
+            result -> {
+                long read = 0;
+                while (result.next()) {
+                    filter.add(result.getString(1));
+                    read++;
+                }
+                return read;
+            },
+            core
+        );
+        logger.info(
+            "Loaded " + rows + " change_tracker ids of core " + core + " into a filter in "
+            + (System.currentTimeMillis() - startTime) + " ms: "
+            + String.format("%.1f", filter.getMemoryBytes() / 1048576.0) + " MB"
+        );
+        return filter;
+    }
+
+    /**
+     * Get the bit index of the i-th hash of an id (double hashing of the two
+     * halves of one 64-bit hash).
+     */
+    private long bit(long h, int i)
+    {
+        int h1 = (int)h;
+        int h2 = (int)(h >>> 32);
+        return Math.floorMod(h1 + (long)i * h2, bits);
+    }
+
+    /**
+     * Add an id (after its row has been written).
+     * @param id record id
+     */
+    public void add(String id)
+    {
+        long h = ChangeTrackerPreload.hash(id);
+        for (int i = 0; i < HASHES; i++) {
+            long bit = bit(h, i);
+            int word = (int)(bit >>> 6);
+            long mask = 1L << bit;
+            long current = words.get(word);
+            while ((current & mask) == 0 && !words.compareAndSet(word, current, current | mask)) {
+                current = words.get(word);
+            }
+        }
+    }
+
+    /**
+     * Might the id have a row? (If not, it certainly has none, unless another
+     * process created it after the filter was loaded.)
+     * @param id record id
+     */
+    public boolean mightContain(String id)
+    {
+        long h = ChangeTrackerPreload.hash(id);
+        for (int i = 0; i < HASHES; i++) {
+            long bit = bit(h, i);
+            if ((words.get((int)(bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get the memory used by the filter, in bytes.
+     */
+    public long getMemoryBytes()
+    {
+        return bits / 8;
+    }
+}
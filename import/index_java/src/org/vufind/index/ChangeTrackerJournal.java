@@ -0,0 +1,455 @@
+package org.vufind.index;
+/**
+ * Local append-only journal of change tracker updates.
+ *
+ * Copyright (C) Villanova University 2026.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import org.apache.log4j.Logger;
+
+/**
+ * Local append-only journal of change tracker updates.
+ *
+ * Instead of writing to the database while indexing, UpdateDateTracker
+ * appends its decisions to a memory-mapped file; apply() writes them to the
+ * change_tracker table in bulk when the run ends. Appending is a memory copy,
+ * so indexer threads never wait for the network (combined with
+ * vufind.change_tracker.preload, reads do not either).
+ *
+ * The file is mapped in regions of REGION_BYTES, growing one region at a
+ * time. Each entry is a length, a CRC-32 and the row (core, id and four dates
+ * as epoch milliseconds); the length is written last, so an entry is either
+ * complete or absent. Mapped pages belong to the operating system as soon as
+ * they are written, so entries survive the import being killed; regions are
+ * forced to disk when they fill and on close, so at most the current region
+ * is at risk if the machine itself fails. apply() stops at the first missing
+ * or damaged entry, and applying a journal again gives the same result, so
+ * an interrupted run is recovered by applying its journal before the next run
+ * starts (DatabaseManager does this automatically).
+ *
+ * The journal keeps the file offset of the latest entry of each record it has
+ * taken, so getPending() can return a record's row before the journal is
+ * applied. The offsets are kept in an open-addressing hash table in direct
+ * memory, keyed by the two hashes ChangeTrackerPreload uses for ids: each slot
+ * takes 24 bytes, and the table doubles when it is three quarters full, so it
+ * takes 32 to 64 bytes per record (plus the old table while it grows) and no
+ * heap. A row read back is also checked against its entry's core and id.
+ *
+ * Usage to apply a journal by hand (see CommandLineTool for the class path):
+ * java ... org.vufind.index.ChangeTrackerJournal apply [file]
+ */
+public class ChangeTrackerJournal implements ChangeTrackerSink
+{
+    // Initialize logging category
+    static Logger logger = Logger.getLogger(ChangeTrackerJournal.class.getName());
+
+    // Bytes mapped at a time (the file grows by this much):
+    private static final int REGION_BYTES = 16 << 20;
+
+    // Entry length marking the end of the entries in a region:
+    private static final int REGION_END = -1;
+
+    // Length and CRC preceding each entry:
+    private static final int HEADER_BYTES = 8;
+
+    // Stored in place of a null date:
+    private static final long NULL_DATE = Long.MIN_VALUE;
+
+    // Rows per transaction when applying a journal:
+    private static final int BATCH_SIZE = 1000;
+
+    // Offset index slot layout: hash, check hash, file offset of the entry:
+    private static final int SLOT_BYTES = 24;
+
+    // Slots per direct buffer of the offset index, and initial slot count:
+    private static final int SEGMENT_BITS = 20;
+    private static final int SEGMENT_MASK = (1 << SEGMENT_BITS) - 1;
+    private static final long INITIAL_SLOTS = 1 << 16;
+
+    private final File file;
+    private final FileChannel channel;
+    private final CRC32 crc = new CRC32();
+    private final List<MappedByteBuffer> regions = new ArrayList<>();
+    private ByteBuffer[] offsets = allocateSlots(INITIAL_SLOTS);
+    private long offsetMask = INITIAL_SLOTS - 1;
+    private long records = 0;
+    private MappedByteBuffer region;
+    private long regionStart = 0;
+    private long entries = 0;
+    private boolean closed = false;
+
+    /**
+     * Constructor (creates an empty journal; apply any entries left in the
+     * file first)
+     * @param file journal file
+     */
+    public ChangeTrackerJournal(File file) throws IOException
+    {
+        this.file = file;
+        channel = FileChannel.open(
+            file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING
+        );
+        region = channel.map(FileChannel.MapMode.READ_WRITE, regionStart, REGION_BYTES);
+        regions.add(region);
+    }
+
+    private static String key(String core, String id)
+    {
+        return core + '\u0000' + id;
+    }
+
+    /**
+     * Allocate the direct buffers of an empty offset index.
+     * @param capacity number of slots (a power of two)
+     */
+    private static ByteBuffer[] allocateSlots(long capacity)
+    {
+        ByteBuffer[] segments = new ByteBuffer[(int)((capacity + SEGMENT_MASK) >>> SEGMENT_BITS)];
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = ByteBuffer.allocateDirect((int)Math.min(capacity, 1 << SEGMENT_BITS) * SLOT_BYTES);
+        }
+        return segments;
+    }
+
+    /**
+     * Find the slot of the offset index holding a record's hashes, or the empty
+     * slot where they belong.
+     * @param segments offset index
+     * @param mask     slot count - 1
+     * @param h        hash
+     * @param c        check hash
+     */
+    private static long findSlot(ByteBuffer[] segments, long mask, long h, long c)
+    {
+        long slot = h & mask;
+        while (true) {
+            ByteBuffer buffer = segments[(int)(slot >>> SEGMENT_BITS)];
+            int offset = (int)(slot & SEGMENT_MASK) * SLOT_BYTES;
+            long key = buffer.getLong(offset);
+            if (key == 0 || key == h && buffer.getLong(offset + 8) == c) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Record the file offset of a record's latest entry.
+     * @param key   core and id (see key())
+     * @param entry file offset of the entry
+     */
+    private void putOffset(String key, long entry)
+    {
+        if (records >= (offsetMask + 1) / 4 * 3) {
+            growOffsets();
+        }
+        long h = ChangeTrackerPreload.hash(key);
+        long c = ChangeTrackerPreload.check(key);
+        long slot = findSlot(offsets, offsetMask, h, c);
+        ByteBuffer buffer = offsets[(int)(slot >>> SEGMENT_BITS)];
+        int offset = (int)(slot & SEGMENT_MASK) * SLOT_BYTES;
+        if (buffer.getLong(offset) == 0) {
+            records++;
+            buffer.putLong(offset, h);
+            buffer.putLong(offset + 8, c);
+        }
+        buffer.putLong(offset + 16, entry);
+    }
+
+    /**
+     * Get the file offset of a record's latest entry (-1 if none).
+     * @param key core and id (see key())
+     */
+    private long getOffset(String key)
+    {
+        long slot = findSlot(offsets, offsetMask, ChangeTrackerPreload.hash(key), ChangeTrackerPreload.check(key));
+        ByteBuffer buffer = offsets[(int)(slot >>> SEGMENT_BITS)];
+        int offset = (int)(slot & SEGMENT_MASK) * SLOT_BYTES;
+        return buffer.getLong(offset) == 0 ? -1 : buffer.getLong(offset + 16);
+    }
+
+    /**
+     * Double the size of the offset index.
+     */
+    private void growOffsets()
+    {
+        long mask = (offsetMask << 1) | 1;
+        ByteBuffer[] grown = allocateSlots(mask + 1);
+        for (long slot = 0; slot <= offsetMask; slot++) {
+            ByteBuffer buffer = offsets[(int)(slot >>> SEGMENT_BITS)];
+            int offset = (int)(slot & SEGMENT_MASK) * SLOT_BYTES;
+            long h = buffer.getLong(offset);
+            if (h != 0) {
+                long c = buffer.getLong(offset + 8);
+                long target = findSlot(grown, mask, h, c);
+                ByteBuffer targetBuffer = grown[(int)(target >>> SEGMENT_BITS)];
+                int targetOffset = (int)(target & SEGMENT_MASK) * SLOT_BYTES;
+                targetBuffer.putLong(targetOffset, h);
+                targetBuffer.putLong(targetOffset + 8, c);
+                targetBuffer.putLong(targetOffset + 16, buffer.getLong(offset + 16));
+            }
+        }
+        offsets = grown;
+        offsetMask = mask;
+    }
+
+    /**
+     * Get the journal file.
+     */
+    public File getFile()
+    {
+        return file;
+    }
+
+    /**
+     * Append a row.
+     * @param row row to write
+     * @throws SQLException if the journal is closed or cannot be extended
+     */
+    @Override
+    public synchronized void add(ChangeTrackerRow row) throws SQLException
+    {
+        if (closed) {
+            throw new SQLException("Change tracker journal is closed");
+        }
+        byte[] core = row.core.getBytes(StandardCharsets.UTF_8);
+        byte[] id = row.id.getBytes(StandardCharsets.UTF_8);
+        if (core.length > Short.MAX_VALUE || id.length > Short.MAX_VALUE) {
+            throw new SQLException("Record id too long for the change tracker journal: " + row.id);
+        }
+        int length = 2 + core.length + 2 + id.length + 32;
+
+        // Keep room for an end marker after the entry:
+        if (region.remaining() < HEADER_BYTES + length + 4) {
+            region.putInt(REGION_END);
+            try {
+                region.force();
+                regionStart += REGION_BYTES;
+                region = channel.map(FileChannel.MapMode.READ_WRITE, regionStart, REGION_BYTES);
+                regions.add(region);
+            } catch (IOException e) {
+                throw new SQLException("Unable to extend change tracker journal " + file + ": " + e.getMessage(), e);
+            }
+        }
+
+        int position = region.position();
+        region.position(position + HEADER_BYTES);
+        region.putShort((short)core.length).put(core).putShort((short)id.length).put(id)
+            .putLong(toMillis(row.firstIndexed)).putLong(toMillis(row.lastIndexed))
+            .putLong(toMillis(row.lastRecordChange)).putLong(toMillis(row.deleted));
+        ByteBuffer entry = region.duplicate();
+        entry.position(position + HEADER_BYTES).limit(position + HEADER_BYTES + length);
+        crc.reset();
+        crc.update(entry);
+        region.putInt(position + 4, (int)crc.getValue());
+        region.putInt(position, length);
+        putOffset(key(row.core, row.id), regionStart + position);
+        entries++;
+    }
+
+    /**
+     * Get the latest row of a record taken by this journal (null if none).
+     * @param core core
+     * @param id   record id
+     */
+    @Override
+    public synchronized ChangeTrackerRow getPending(String core, String id)
+    {
+        if (closed) {
+            return null;
+        }
+        long offset = getOffset(key(core, id));
+        if (offset < 0) {
+            return null;
+        }
+        ByteBuffer entry = regions.get((int)(offset / REGION_BYTES)).duplicate();
+        entry.position((int)(offset % REGION_BYTES));
+        ChangeTrackerRow row = readEntry(entry, entry.getInt(), crc);
+        return row != null && row.core.equals(core) && row.id.equals(id) ? row : null;
+    }
+
+    /**
+     * Force all entries to disk and close the file.
+     */
+    public synchronized void close() throws IOException
+    {
+        if (!closed) {
+            closed = true;
+            region.force();
+            channel.close();
+            regions.clear();
+            logger.info(
+                "Change tracker journal " + file + ": " + entries + " entries for " + records + " records, "
+                + String.format("%.1f", (offsetMask + 1) * SLOT_BYTES / 1048576.0) + " MB offset index"
+            );
+            offsets = null;
+        }
+    }
+
+    private static long toMillis(Timestamp date)
+    {
+        return date == null ? NULL_DATE : date.getTime();
+    }
+
+    private static Timestamp toTimestamp(long millis)
+    {
+        return millis == NULL_DATE ? null : new Timestamp(millis);
+    }
+
+    /**
+     * Write the entries of a journal file to the change_tracker table, in
+     * transactions of BATCH_SIZE rows (later entries of a record win).
+     * @param file            journal file
+     * @param databaseManager manager providing change tracker connections
+     * @return number of entries applied
+     */
+    public static long apply(File file, DatabaseManager databaseManager) throws IOException, SQLException
+    {
+        long startTime = System.currentTimeMillis();
+        long count = 0;
+        try (
+            FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            Connection db = databaseManager.getTrackerConnection()
+        ) {
+            db.setAutoCommit(false);
+            try {
+                Map<String, ChangeTrackerRow> batch = new LinkedHashMap<>();
+                CRC32 crc = new CRC32();
+                long size = channel.size();
+                boolean more = true;
+                for (long start = 0; more && start < size; start += REGION_BYTES) {
+                    ByteBuffer region = channel.map(
+                        FileChannel.MapMode.READ_ONLY, start, Math.min(REGION_BYTES, size - start)
+                    );
+                    more = false;
+                    while (region.remaining() >= 4) {
+                        int length = region.getInt();
+                        if (length == REGION_END) {
+                            more = true;
+                            break;
+                        }
+                        ChangeTrackerRow row = length > 0 && length <= region.remaining() - 4
+                            ? readEntry(region, length, crc) : null;
+                        if (row == null) {
+                            if (length != 0) {
+                                logger.warn("Ignoring damaged change tracker journal entry at offset "
+                                    + (start + region.position()) + " of " + file + " and everything after it");
+                            }
+                            break;
+                        }
+                        batch.put(key(row.core, row.id), row);
+                        count++;
+                        if (batch.size() >= BATCH_SIZE) {
+                            writeBatch(db, batch, databaseManager);
+                        }
+                    }
+                }
+                writeBatch(db, batch, databaseManager);
+            } catch (SQLException e) {
+                db.rollback();
+                throw e;
+            } finally {
+                db.setAutoCommit(true);
+            }
+        }
+        logger.info(
+            "Applied " + count + " change tracker journal entries from " + file + " in "
+            + (System.currentTimeMillis() - startTime) + " ms"
+        );
+        return count;
+    }
+
+    /**
+     * Read an entry (positioned after its length), checking its CRC.
+     * @return row, or null if the entry is damaged
+     */
+    private static ChangeTrackerRow readEntry(ByteBuffer region, int length, CRC32 crc)
+    {
+        int checksum = region.getInt();
+        ByteBuffer entry = region.slice();
+        entry.limit(length);
+        crc.reset();
+        crc.update(entry.duplicate());
+        if ((int)crc.getValue() != checksum) {
+            return null;
+        }
+        region.position(region.position() + length);
+        String core = readString(entry);
+        String id = readString(entry);
+        return new ChangeTrackerRow(
+            core, id, toTimestamp(entry.getLong()), toTimestamp(entry.getLong()),
+            toTimestamp(entry.getLong()), toTimestamp(entry.getLong())
+        );
+    }
+
+    private static String readString(ByteBuffer entry)
+    {
+        byte[] bytes = new byte[entry.getShort()];
+        entry.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Write and commit a batch of rows, then empty it.
+     */
+    private static void writeBatch(Connection db, Map<String, ChangeTrackerRow> batch,
+        DatabaseManager databaseManager) throws SQLException
+    {
+        if (!batch.isEmpty()) {
+            ChangeTrackerRow.upsert(db, batch.values(), databaseManager.getStatistics());
+            db.commit();
+            batch.clear();
+        }
+    }
+
+    public static void main(String[] args) throws Exception
+    {
+        if (args.length < 1 || args.length > 2 || !args[0].equals("apply")) {
+            CommandLineTool.exitWithUsage("Usage: ChangeTrackerJournal apply [file]");
+        }
+        CommandLineTool.initialize();
+        DatabaseManager manager = DatabaseManager.instance();
+        String path = args.length > 1 ? args[1] : manager.getTrackerJournalPath();
+        if (path.isEmpty()) {
+            CommandLineTool.exitWithUsage("No file given and vufind.change_tracker.journal is not set");
+        }
+        File file = new File(path);
+        if (file.exists()) {
+            apply(file, manager);
+            Files.delete(file.toPath());
+        } else {
+            logger.info("No change tracker journal at " + file);
+        }
+        manager.shutdown();
+    }
+}
@@ -0,0 +1,315 @@
+package org.vufind.index;
+/**
+ * Off-heap copy of the change tracker rows of one core.
+ *
+ * Copyright (C) Villanova University 2026.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+import java.nio.ByteBuffer;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.concurrent.locks.StampedLock;
+import org.apache.log4j.Logger;
+
+/**
+ * Off-heap copy of the change tracker rows of one core.
+ *
+ * For full re-indexes, all rows of a core are streamed into an open-addressing
+ * hash table in direct memory at startup, so that deciding whether a record is
+ * new, changed or unchanged is a memory lookup; the database is only used to
+ * write. Each entry takes 48 bytes: two independent 64-bit hashes of the
+ * record id plus first indexed, last indexed, last record change and deletion
+ * dates as epoch seconds. The table is sized once from the row count (with room for 25% new
+ * records at a load factor of at most 0.75), so memory use is known up front
+ * and logged.
+ *
+ * Records are identified by both hashes (the first places the entry, the
+ * second confirms it), so two ids are only confused if both of their 64-bit
+ * hashes collide, which is negligible even for a billion ids. If more new
+ * records arrive than the table has room for, it stops being complete: lookups
+ * that miss then fall back to the database.
+ */
+public class ChangeTrackerPreload
+{
+    // Initialize logging category
+    static Logger logger = Logger.getLogger(ChangeTrackerPreload.class.getName());
+
+    // Entry layout: hash, check hash, first indexed, last indexed, last record
+    // change, deleted
+    private static final int ENTRY_BYTES = 48;
+
+    // Entries per direct buffer (keeps each buffer well below 2 GB):
+    private static final int SEGMENT_BITS = 20;
+    private static final int SEGMENT_MASK = (1 << SEGMENT_BITS) - 1;
+
+    // Stored in place of a null date:
+    private static final long NULL_DATE = Long.MIN_VALUE;
+
+    private final String core;
+    private final ByteBuffer[] segments;
+    private final long mask;
+    private final long maxEntries;
+    private long entries = 0;
+    private volatile boolean complete = true;
+    private final StampedLock lock = new StampedLock();
+
+    /**
+     * Constructor
+     * @param core         core the rows belong to
+     * @param expectedRows number of rows to make room for (before headroom)
+     */
+    public ChangeTrackerPreload(String core, long expectedRows)
+    {
+        this.core = core;
+        long wanted = (long)Math.ceil((expectedRows + expectedRows / 4 + 1024) / 0.75);
+        long capacity = Long.highestOneBit(wanted);
+        if (capacity < wanted) {
+            capacity <<= 1;
+        }
+        mask = capacity - 1;
+        maxEntries = capacity * 3 / 4;
+        int segmentCount = (int)((capacity + SEGMENT_MASK) >>> SEGMENT_BITS);
+        segments = new ByteBuffer[segmentCount];
+        long remaining = capacity;
+        for (int i = 0; i < segmentCount; i++) {
+            int slots = (int)Math.min(remaining, 1 << SEGMENT_BITS);
+            segments[i] = ByteBuffer.allocateDirect(slots * ENTRY_BYTES);
+            remaining -= slots;
+        }
+    }
+
+    /**
+     * Stream all change tracker rows of a core into a new table.
+     * @param db         database connection
+     * @param core       core to load
+     * @param statistics statistics to record the selects in
+     */
+    public static ChangeTrackerPreload load(Connection db, String core, DatabaseStatistics statistics)
+        throws SQLException
+    {
+        long startTime = System.currentTimeMillis();
+        ChangeTrackerPreload preload = new ChangeTrackerPreload(core, ChangeTrackerRow.count(db, core, statistics));
+        ChangeTrackerRow.stream(
+            db,
+            "SELECT id, first_indexed, last_indexed, last_record_change, deleted FROM change_tracker WHERE core = ?",
+            statistics,
+            result -> {
+                long rows = 0;
+                while (result.next()) {
+                    preload.put(
+                        result.getString(1), result.getTimestamp(2), result.getTimestamp(3),
+                        result.getTimestamp(4), result.getTimestamp(5)
+                    );
+                    rows++;
+                }
+                return rows;
+            },
+            core
+        );
+        logger.info(
+            "Preloaded " + preload.size() + " change_tracker rows of core " + core + " in "
+            + (System.currentTimeMillis() - startTime) + " ms: " + (preload.mask + 1) + " slots, "
+            + String.format("%.1f", preload.getMemoryBytes() / 1048576.0) + " MB of direct memory"
+        );
+        return preload;
+    }
+
+    /**
+     * Hash a record id to a non-zero 64-bit value (FNV-1a, then a MurmurHash3
+     * finalizer to spread the bits).
+     * @param id record id
+     */
+    static long hash(String id)
+    {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < id.length(); i++) {
+            h ^= id.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h == 0 ? 1 : h;
+    }
+
+    /**
+     * Hash a record id to a second 64-bit value, independent of hash() (a
+     * different multiply-rotate mix and the SplitMix64 finalizer).
+     * @param id record id
+     */
+    static long check(String id)
+    {
+        long h = 0x9e3779b97f4a7c15L;
+        for (int i = 0; i < id.length(); i++) {
+            h = Long.rotateLeft((h ^ id.charAt(i)) * 0xbf58476d1ce4e5b9L, 31);
+        }
+        h ^= h >>> 30;
+        h *= 0xbf58476d1ce4e5b9L;
+        h ^= h >>> 27;
+        h *= 0x94d049bb133111ebL;
+        h ^= h >>> 31;
+        return h;
+    }
+
+    private ByteBuffer segment(long slot)
+    {
+        return segments[(int)(slot >>> SEGMENT_BITS)];
+    }
+
+    private static int offset(long slot)
+    {
+        return (int)(slot & SEGMENT_MASK) * ENTRY_BYTES;
+    }
+
+    /**
+     * Find the slot holding an id's hashes, or the empty slot where they belong.
+     * @param h hash
+     * @param c check hash
+     */
+    private long findSlot(long h, long c)
+    {
+        long slot = h & mask;
+        while (true) {
+            ByteBuffer buffer = segment(slot);
+            int offset = offset(slot);
+            long key = buffer.getLong(offset);
+            if (key == 0 || key == h && buffer.getLong(offset + 8) == c) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private static long toSeconds(Timestamp date)
+    {
+        return date == null ? NULL_DATE : Math.floorDiv(date.getTime(), 1000);
+    }
+
+    private static Timestamp toTimestamp(long seconds)
+    {
+        return seconds == NULL_DATE ? null : new Timestamp(seconds * 1000);
+    }
+
+    /**
+     * Look up the row of a record.
+     * @param id record id
+     * @return row, or null if the record is not in the table
+     */
+    public ChangeTrackerRow get(String id)
+    {
+        long h = hash(id);
+        long c = check(id);
+        long stamp = lock.tryOptimisticRead();
+        ChangeTrackerRow row = read(id, h, c);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                row = read(id, h, c);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return row;
+    }
+
+    private ChangeTrackerRow read(String id, long h, long c)
+    {
+        long slot = findSlot(h, c);
+        ByteBuffer buffer = segment(slot);
+        int offset = offset(slot);
+        if (buffer.getLong(offset) == 0) {
+            return null;
+        }
+        return new ChangeTrackerRow(
+            core, id, toTimestamp(buffer.getLong(offset + 16)), toTimestamp(buffer.getLong(offset + 24)),
+            toTimestamp(buffer.getLong(offset + 32)), toTimestamp(buffer.getLong(offset + 40))
+        );
+    }
+
+    /**
+     * Store the row of a record (after it has been created or updated).
+     * @param row row to store
+     */
+    public void put(ChangeTrackerRow row)
+    {
+        put(row.id, row.firstIndexed, row.lastIndexed, row.lastRecordChange, row.deleted);
+    }
+
+    private void put(String id, Timestamp firstIndexed, Timestamp lastIndexed, Timestamp lastRecordChange,
+        Timestamp deleted)
+    {
+        long h = hash(id);
+        long c = check(id);
+        long stamp = lock.writeLock();
+        try {
+            long slot = findSlot(h, c);
+            ByteBuffer buffer = segment(slot);
+            int offset = offset(slot);
+            if (buffer.getLong(offset) == 0) {
+                if (entries >= maxEntries) {
+                    if (complete) {
+                        logger.warn("Preloaded change_tracker table of core " + core + " is full; "
+                            + "looking up new records in the database");
+                        complete = false;
+                    }
+                    return;
+                }
+                entries++;
+                buffer.putLong(offset + 8, c);
+                buffer.putLong(offset, h);
+            }
+            buffer.putLong(offset + 16, toSeconds(firstIndexed));
+            buffer.putLong(offset + 24, toSeconds(lastIndexed));
+            buffer.putLong(offset + 32, toSeconds(lastRecordChange));
+            buffer.putLong(offset + 40, toSeconds(deleted));
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Does the table hold every row of the core? (If so, a record missing
+     * from it has no row in the database either.)
+     */
+    public boolean isComplete()
+    {
+        return complete;
+    }
+
+    /**
+     * Get the number of rows in the table.
+     */
+    public long size()
+    {
+        long stamp = lock.readLock();
+        try {
+            return entries;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Get the direct memory used by the table, in bytes.
+     */
+    public long getMemoryBytes()
+    {
+        return (mask + 1) * ENTRY_BYTES;
+    }
+}
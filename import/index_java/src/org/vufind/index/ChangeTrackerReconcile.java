@@ -0,0 +1,430 @@
+package org.vufind.index;
+/**
+ * Reconcile the change tracker with the ids in a Solr core.
+ *
+ * Copyright (C) Villanova University 2026.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.log4j.Logger;
+
+/**
+ * Reconcile the change tracker with the ids in a Solr core.
+ *
+ * The ids of the core's change_tracker rows (read in code point order, which
+ * MySQL/MariaDB, PostgreSQL and H2 2.x support) and
+ * the ids of a Solr export file (one id per line, in the same order -- for
+ * example sorted with LC_ALL=C sort) are merged like two sorted lists, so
+ * any number of ids is compared in constant memory. Three kinds of drift are
+ * written to files, one id per line:
+ *
+ * - tracker-only: rows that are not deleted, for ids missing from Solr
+ * - solr-only: ids in Solr without a row
+ * - deleted-in-tracker: ids in Solr whose row is marked as deleted
+ *
+ * With --fix, they are also corrected in batches: tracker-only rows are marked
+ * as deleted (see ChangeTrackerDeletions), solr-only ids get a row first
+ * indexed now, and the deletion dates of deleted-in-tracker rows are cleared.
+ *
+ * Usage (see CommandLineTool for the class path):
+ * java ... org.vufind.index.ChangeTrackerReconcile [--fix] solr-id-file output-prefix [core]
+ */
+public class ChangeTrackerReconcile
+{
+    // Initialize logging category
+    static Logger logger = Logger.getLogger(ChangeTrackerReconcile.class.getName());
+
+    // Ids per fix transaction:
+    private static final int BATCH_SIZE = 1000;
+
+    private final DatabaseManager databaseManager;
+    private final String core;
+    private final boolean fix;
+
+    // Ids waiting to be fixed:
+    private final List<String> trackerOnlyBatch = new ArrayList<>();
+    private final List<String> solrOnlyBatch = new ArrayList<>();
+    private final List<String> deletedBatch = new ArrayList<>();
+
+    // Counts:
+    private long matched = 0;
+    private long trackerOnly = 0;
+    private long solrOnly = 0;
+    private long deletedInTracker = 0;
+
+    // Solr ids read so far (for error messages) and the previous one:
+    private long solrLine = 0;
+    private String previousSolrId = null;
+
+    /**
+     * Constructor
+     * @param databaseManager manager providing change tracker connections
+     * @param core            core to reconcile
+     * @param fix             whether to correct the drift found
+     */
+    public ChangeTrackerReconcile(DatabaseManager databaseManager, String core, boolean fix)
+    {
+        this.databaseManager = databaseManager;
+        this.core = core;
+        this.fix = fix;
+    }
+
+    /**
+     * Compare two ids in code point order (the order of UTF-8 bytes, used by
+     * Solr and by the binary collations the rows are read with).
+     */
+    static int compareIds(String a, String b)
+    {
+        int i = 0;
+        int j = 0;
+        while (i < a.length() && j < b.length()) {
+            int ca = a.codePointAt(i);
+            int cb = b.codePointAt(j);
+            if (ca != cb) {
+                return Integer.compare(ca, cb);
+            }
+            i += Character.charCount(ca);
+            j += Character.charCount(cb);
+        }
+        return Integer.compare(a.length() - i, b.length() - j);
+    }
+
+    /**
+     * Get the ORDER BY expression that sorts ids in code point order. Each
+     * supported database needs an explicit binary ordering, as its default
+     * collation may differ; other databases are refused.
+     * @param db database connection
+     * @throws SQLException if the database is not supported
+     */
+    private static String getIdOrder(Connection db) throws SQLException
+    {
+        String product = db.getMetaData().getDatabaseProductName().toLowerCase();
+        if (product.contains("mysql") || product.contains("mariadb")) {
+            return "CAST(id AS BINARY)";
+        } else if (product.contains("postgresql")) {
+            return "id COLLATE \"C\"";
+        } else if (product.equals("h2")) {
+            // H2 2.x casts strings to their UTF-8 bytes and compares bytes
+            // unsigned; older versions do neither:
+            if (db.getMetaData().getDatabaseMajorVersion() < 2) {
+                throw new SQLException("Reconciling an embedded change tracker requires H2 2.0 or later");
+            }
+            return "CAST(id AS VARBINARY)";
+        }
+        throw new SQLException(
+            "Unable to read change_tracker ids in code point order from "
+            + db.getMetaData().getDatabaseProductName()
+        );
+    }
+
+    /**
+     * Read the next Solr id (null at the end), skipping blank lines and
+     * repeated ids.
+     * @param solrIds Solr id stream
+     * @throws IOException if the ids are not sorted
+     */
+    private String nextSolrId(BufferedReader solrIds) throws IOException
+    {
+        String line;
+        while ((line = solrIds.readLine()) != null) {
+            solrLine++;
+            String id = line.trim();
+            if (id.isEmpty()) {
+                continue;
+            }
+            if (previousSolrId != null) {
+                int order = compareIds(previousSolrId, id);
+                if (order == 0) {
+                    continue;
+                } else if (order > 0) {
+                    throw new IOException(
+                        "Solr ids are not sorted at line " + solrLine + ": " + id + " follows " + previousSolrId
+                    );
+                }
+            }
+            previousSolrId = id;
+            return id;
+        }
+        return null;
+    }
+
+    /**
+     * Merge the change tracker rows of the core with a sorted stream of Solr
+     * ids, writing the differences found (and fixing them, if enabled).
+     * @param solrIds          sorted Solr ids, one per line
+     * @param trackerOnlyOut   destination for tracker-only ids
+     * @param solrOnlyOut      destination for solr-only ids
+     * @param deletedOut       destination for deleted-in-tracker ids
+     */
+    public void reconcile(BufferedReader solrIds, Writer trackerOnlyOut, Writer solrOnlyOut, Writer deletedOut)
+        throws IOException, SQLException
+    {
+        try (Connection db = databaseManager.getTrackerConnection()) {
+            ChangeTrackerRow.stream(
+                db, "SELECT id, deleted FROM change_tracker WHERE core = ? ORDER BY " + getIdOrder(db),
+                databaseManager.getStatistics(),
+                result -> merge(result, solrIds, trackerOnlyOut, solrOnlyOut, deletedOut),
+                core
+            );
+        }
+        if (fix) {
+            fixTrackerOnly();
+            fixSolrOnly();
+            fixDeleted();
+        }
+    }
+
+    /**
+     * Merge-join the rows with the Solr ids.
+     * @return number of rows read
+     */
+    private long merge(ResultSet rows, BufferedReader solrIds, Writer trackerOnlyOut, Writer solrOnlyOut,
+        Writer deletedOut) throws IOException, SQLException
+    {
+        String trackerId = null;
+        boolean deleted = false;
+        long read = 0;
+        if (rows.next()) {
+            trackerId = rows.getString(1);
+            deleted = rows.getTimestamp(2) != null;
+            read++;
+        }
+        String solrId = nextSolrId(solrIds);
+        while (trackerId != null || solrId != null) {
+            int order = trackerId == null ? 1 : solrId == null ? -1 : compareIds(trackerId, solrId);
+            if (order < 0) {
+                // In the tracker only (fine if it is marked as deleted):
+                if (!deleted) {
+                    write(trackerOnlyOut, trackerId);
+                    trackerOnly++;
+                    if (fix && add(trackerOnlyBatch, trackerId)) {
+                        fixTrackerOnly();
+                    }
+                }
+            } else if (order > 0) {
+                write(solrOnlyOut, solrId);
+                solrOnly++;
+                if (fix && add(solrOnlyBatch, solrId)) {
+                    fixSolrOnly();
+                }
+            } else if (deleted) {
+                write(deletedOut, solrId);
+                deletedInTracker++;
+                if (fix && add(deletedBatch, solrId)) {
+                    fixDeleted();
+                }
+            } else {
+                matched++;
+            }
+            if (order <= 0) {
+                String previous = trackerId;
+                trackerId = null;
+                if (rows.next()) {
+                    trackerId = rows.getString(1);
+                    deleted = rows.getTimestamp(2) != null;
+                    read++;
+                    if (compareIds(previous, trackerId) >= 0) {
+                        throw new SQLException(
+                            "change_tracker ids are not in code point order: " + trackerId + " follows " + previous
+                        );
+                    }
+                }
+            }
+            if (order >= 0) {
+                solrId = nextSolrId(solrIds);
+            }
+        }
+        return read;
+    }
+
+    private static void write(Writer out, String id) throws IOException
+    {
+        out.write(id);
+        out.write('\n');
+    }
+
+    /**
+     * Add an id to a fix batch.
+     * @return whether the batch is full
+     */
+    private static boolean add(List<String> batch, String id)
+    {
+        batch.add(id);
+        return batch.size() >= BATCH_SIZE;
+    }
+
+    /**
+     * Mark the tracker-only rows of the batch as deleted.
+     */
+    private void fixTrackerOnly() throws SQLException
+    {
+        if (!trackerOnlyBatch.isEmpty()) {
+            new ChangeTrackerDeletions(databaseManager).markDeleted(core, trackerOnlyBatch);
+            trackerOnlyBatch.clear();
+        }
+    }
+
+    /**
+     * Create rows for the solr-only ids of the batch.
+     */
+    private void fixSolrOnly() throws SQLException
+    {
+        if (solrOnlyBatch.isEmpty()) {
+            return;
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<ChangeTrackerRow> rows = new ArrayList<>();
+        for (String id : solrOnlyBatch) {
+            rows.add(new ChangeTrackerRow(core, id, now, now, null, null));
+        }
+        try (Connection db = databaseManager.getTrackerConnection()) {
+            db.setAutoCommit(false);
+            try {
+                ChangeTrackerRow.insert(db, rows, databaseManager.getStatistics());
+                db.commit();
+            } catch (SQLException e) {
+                db.rollback();
+                throw e;
+            } finally {
+                db.setAutoCommit(true);
+            }
+        }
+        solrOnlyBatch.clear();
+    }
+
+    /**
+     * Clear the deletion dates of the deleted-in-tracker rows of the batch
+     * (giving rows without one a first indexed date, as when a deleted record
+     * is indexed again).
+     */
+    private void fixDeleted() throws SQLException
+    {
+        if (deletedBatch.isEmpty()) {
+            return;
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        try (Connection db = databaseManager.getTrackerConnection()) {
+            db.setAutoCommit(false);
+            try (
+                PreparedStatement update = db.prepareStatement(
+                    "UPDATE change_tracker SET deleted = NULL, first_indexed = COALESCE(first_indexed, ?) "
+                    + "WHERE core = ? AND id = ? AND deleted IS NOT NULL"
+                )
+            ) {
+                for (String id : deletedBatch) {
+                    update.setTimestamp(1, now);
+                    update.setString(2, core);
+                    update.setString(3, id);
+                    update.addBatch();
+                }
+                long start = System.nanoTime();
+                update.executeBatch();
+                databaseManager.getStatistics().record(DatabaseStatistics.Operation.UPDATE, start, deletedBatch.size());
+                db.commit();
+            } catch (SQLException e) {
+                db.rollback();
+                throw e;
+            } finally {
+                db.setAutoCommit(true);
+            }
+        }
+        deletedBatch.clear();
+    }
+
+    /**
+     * Get the number of ids found in both, with a row that is not deleted.
+     */
+    public long getMatched()
+    {
+        return matched;
+    }
+
+    /**
+     * Get the number of rows that are not deleted, for ids missing from Solr.
+     */
+    public long getTrackerOnly()
+    {
+        return trackerOnly;
+    }
+
+    /**
+     * Get the number of Solr ids without a row.
+     */
+    public long getSolrOnly()
+    {
+        return solrOnly;
+    }
+
+    /**
+     * Get the number of Solr ids whose row is marked as deleted.
+     */
+    public long getDeletedInTracker()
+    {
+        return deletedInTracker;
+    }
+
+    public static void main(String[] args) throws Exception
+    {
+        boolean fix = args.length > 0 && args[0].equals("--fix");
+        int first = fix ? 1 : 0;
+        if (args.length - first < 2 || args.length - first > 3) {
+            CommandLineTool.exitWithUsage(
+                "Usage: ChangeTrackerReconcile [--fix] solr-id-file output-prefix [core]"
+            );
+        }
+        String prefix = args[first + 1];
+        String core = args.length - first > 2 ? args[first + 2] : "biblio";
+        CommandLineTool.initialize();
+        DatabaseManager manager = DatabaseManager.instance();
+        ChangeTrackerReconcile reconcile = new ChangeTrackerReconcile(manager, core, fix);
+        long start = System.currentTimeMillis();
+        try (
+            BufferedReader solrIds = Files.newBufferedReader(Paths.get(args[first]), StandardCharsets.UTF_8);
+            BufferedWriter trackerOnlyOut = Files.newBufferedWriter(
+                Paths.get(prefix + "-tracker-only.txt"), StandardCharsets.UTF_8
+            );
+            BufferedWriter solrOnlyOut = Files.newBufferedWriter(
+                Paths.get(prefix + "-solr-only.txt"), StandardCharsets.UTF_8
+            );
+            BufferedWriter deletedOut = Files.newBufferedWriter(
+                Paths.get(prefix + "-deleted-in-tracker.txt"), StandardCharsets.UTF_8
+            )
+        ) {
+            reconcile.reconcile(solrIds, trackerOnlyOut, solrOnlyOut, deletedOut);
+        }
+        logger.info(
+            "Core " + core + ": " + reconcile.getMatched() + " ids match, " + reconcile.getTrackerOnly()
+            + " tracker-only, " + reconcile.getSolrOnly() + " solr-only, " + reconcile.getDeletedInTracker()
+            + " deleted-in-tracker" + (fix ? " (fixed)" : "") + ", in " + (System.currentTimeMillis() - start)
+            + " ms"
+        );
+        manager.shutdown();
+    }
+}
@@ -0,0 +1,414 @@
+package org.vufind.index;
+/**
+ * Row of the change_tracker table.
+ *
+ * Copyright (C) Villanova University 2026.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Row of the change_tracker table.
+ */
+public class ChangeTrackerRow
+{
+    public static final String COLUMNS = "core, id, first_indexed, last_indexed, last_record_change, deleted";
+
+    // Maximum number of ids per IN (...) select of missing():
+    private static final int SELECT_CHUNK_SIZE = 100;
+
+    // Rows per fetch of a streamed select (on databases other than MySQL):
+    private static final int STREAM_FETCH_SIZE = 10000;
+
+    /**
+     * Reader of the result of a streamed select (see stream()).
+     */
+    @FunctionalInterface
+    public interface StreamReader<E extends Exception>
+    {
+        /**
+         * Read the rows of the result.
+         * @param result result of the select
+         * @return number of rows read
+         */
+        long read(ResultSet result) throws SQLException, E;
+    }
+
+    public final String core;
+    public final String id;
+    public final Timestamp firstIndexed;
+    public final Timestamp lastIndexed;
+    public final Timestamp lastRecordChange;
+    public final Timestamp deleted;
+
+    /**
+     * Constructor
+     * @param core             core
+     * @param id               record id
+     * @param firstIndexed     first indexed date
+     * @param lastIndexed      last indexed date
+     * @param lastRecordChange last record change date
+     * @param deleted          deletion date (null if not deleted)
+     */
+    public ChangeTrackerRow(String core, String id, Timestamp firstIndexed, Timestamp lastIndexed,
+        Timestamp lastRecordChange, Timestamp deleted)
+    {
+        this.core = core;
+        this.id = id;
+        this.firstIndexed = firstIndexed;
+        this.lastIndexed = lastIndexed;
+        this.lastRecordChange = lastRecordChange;
+        this.deleted = deleted;
+    }
+
+    /**
+     * Read a row from a result set selecting COLUMNS.
+     * @param result result set positioned on the row
+     */
+    public static ChangeTrackerRow read(ResultSet result) throws SQLException
+    {
+        return new ChangeTrackerRow(
+            result.getString(1), result.getString(2), result.getTimestamp(3),
+            result.getTimestamp(4), result.getTimestamp(5), result.getTimestamp(6)
+        );
+    }
+
+    /**
+     * Set the values of COLUMNS as the first six parameters of a statement.
+     * @param statement statement to fill in
+     */
+    public void set(PreparedStatement statement) throws SQLException
+    {
+        statement.setString(1, core);
+        statement.setString(2, id);
+        statement.setTimestamp(3, firstIndexed);
+        statement.setTimestamp(4, lastIndexed);
+        statement.setTimestamp(5, lastRecordChange);
+        statement.setTimestamp(6, deleted);
+    }
+
+    /**
+     * Count the change_tracker rows of a core.
+     * @param db         database connection
+     * @param core       core
+     * @param statistics statistics to record the statement in
+     */
+    public static long count(Connection db, String core, DatabaseStatistics statistics) throws SQLException
+    {
+        try (
+            PreparedStatement countSql = db.prepareStatement("SELECT COUNT(*) FROM change_tracker WHERE core = ?")
+        ) {
+            countSql.setString(1, core);
+            long start = System.nanoTime();
+            long count;
+            try (ResultSet result = countSql.executeQuery()) {
+                count = result.next() ? result.getLong(1) : 0;
+            }
+            statistics.record(DatabaseStatistics.Operation.SELECT, start, 1);
+            return count;
+        }
+    }
+
+    /**
+     * Run a select whose result may be too large to buffer, handing the rows
+     * to a reader as the database sends them. The driver streams the rows
+     * rather than buffering them (MySQL only streams with a special fetch
+     * size; PostgreSQL needs a transaction, so the select runs in one and the
+     * connection's auto-commit mode is restored afterwards).
+     * @param db         database connection
+     * @param sql        select
+     * @param statistics statistics to record the select in
+     * @param reader     reader of the result
+     * @param parameters string parameters of the select
+     * @return number of rows read
+     */
+    public static <E extends Exception> long stream(Connection db, String sql, DatabaseStatistics statistics,
+        StreamReader<E> reader, String... parameters) throws SQLException, E
+    {
+        boolean autoCommit = db.getAutoCommit();
+        db.setAutoCommit(false);
+        try (
+            PreparedStatement selectSql = db.prepareStatement(
+                sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY
+            )
+        ) {
+            boolean mysql = db.getMetaData().getDatabaseProductName().toLowerCase().contains("mysql");
+            selectSql.setFetchSize(mysql ? Integer.MIN_VALUE : STREAM_FETCH_SIZE);
+            for (int i = 0; i < parameters.length; i++) {
+                selectSql.setString(i + 1, parameters[i]);
+            }
+            long start = System.nanoTime();
+            long rows;
+            try (ResultSet result = selectSql.executeQuery()) {
+                rows = reader.read(result);
+            }
+            statistics.record(DatabaseStatistics.Operation.SELECT, start, rows);
+            db.commit();
+            return rows;
+        } finally {
+            db.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * Read the rows of a set of records with IN (...) selects of up to
+     * chunkSize ids each. Short chunks are padded with a repeated id, so that
+     * every select uses the same SQL (and can be a cached statement).
+     * @param db         database connection
+     * @param core       core
+     * @param ids        record ids
+     * @param chunkSize  maximum number of ids per select
+     * @param statistics statistics to record the statements in
+     * @return rows found, by id
+     */
+    public static Map<String, ChangeTrackerRow> select(Connection db, String core, Collection<String> ids,
+        int chunkSize, DatabaseStatistics statistics) throws SQLException
+    {
+        Map<String, ChangeTrackerRow> rows = new HashMap<>();
+        if (ids.isEmpty()) {
+            return rows;
+        }
+        List<String> idList = new ArrayList<>(ids);
+        int size = Math.min(chunkSize, idList.size());
+        StringBuilder sql = new StringBuilder("SELECT " + COLUMNS + " FROM change_tracker WHERE core = ? AND id IN (?");
+        for (int i = 1; i < size; i++) {
+            sql.append(", ?");
+        }
+        sql.append(')');
+        try (PreparedStatement select = db.prepareStatement(sql.toString())) {
+            for (int offset = 0; offset < idList.size(); offset += size) {
+                select.setString(1, core);
+                for (int i = 0; i < size; i++) {
+                    select.setString(i + 2, idList.get(Math.min(offset + i, idList.size() - 1)));
+                }
+                long start = System.nanoTime();
+                int found = 0;
+                try (ResultSet result = select.executeQuery()) {
+                    while (result.next()) {
+                        ChangeTrackerRow row = read(result);
+                        rows.put(row.id, row);
+                        found++;
+                    }
+                }
+                statistics.record(DatabaseStatistics.Operation.SELECT, start, found);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Update existing rows in one batch. A first indexed date already stored
+     * is kept (the tracker only ever sets it on rows that have none), so a row
+     * created by another process since it was last read keeps its date.
+     * @param db         database connection
+     * @param rows       rows to write
+     * @param statistics statistics to record the statements in
+     * @return update counts, in the order of the rows
+     */
+    public static int[] update(Connection db, Collection<ChangeTrackerRow> rows, DatabaseStatistics statistics)
+        throws SQLException
+    {
+        if (rows.isEmpty()) {
+            return new int[0];
+        }
+        try (
+            PreparedStatement update = db.prepareStatement(
+                "UPDATE change_tracker SET first_indexed = COALESCE(first_indexed, ?), last_indexed = ?, "
+                + "last_record_change = ?, deleted = ? WHERE core = ? AND id = ?"
+            )
+        ) {
+            for (ChangeTrackerRow row : rows) {
+                update.setTimestamp(1, row.firstIndexed);
+                update.setTimestamp(2, row.lastIndexed);
+                update.setTimestamp(3, row.lastRecordChange);
+                update.setTimestamp(4, row.deleted);
+                update.setString(5, row.core);
+                update.setString(6, row.id);
+                update.addBatch();
+            }
+            long start = System.nanoTime();
+            int[] counts = update.executeBatch();
+            statistics.record(DatabaseStatistics.Operation.UPDATE, start, sum(counts));
+            return counts;
+        }
+    }
+
+    /**
+     * Insert new rows in one batch.
+     * @param db         database connection
+     * @param rows       rows to write
+     * @param statistics statistics to record the statements in
+     */
+    public static void insert(Connection db, Collection<ChangeTrackerRow> rows, DatabaseStatistics statistics)
+        throws SQLException
+    {
+        if (rows.isEmpty()) {
+            return;
+        }
+        try (
+            PreparedStatement insert = db.prepareStatement(
+                "INSERT INTO change_tracker(" + COLUMNS + ") VALUES(?, ?, ?, ?, ?, ?)"
+            )
+        ) {
+            for (ChangeTrackerRow row : rows) {
+                row.set(insert);
+                insert.addBatch();
+            }
+            long start = System.nanoTime();
+            int[] counts = insert.executeBatch();
+            statistics.record(DatabaseStatistics.Operation.INSERT, start, sum(counts));
+        }
+    }
+
+    /**
+     * Write rows to a database: update the existing rows, then insert the
+     * rest. The caller is responsible for transactions; a core/id pair may only
+     * occur once.
+     * @param db         database connection
+     * @param rows       rows to write
+     * @param statistics statistics to record the statements in
+     */
+    public static void upsert(Connection db, Collection<ChangeTrackerRow> rows, DatabaseStatistics statistics)
+        throws SQLException
+    {
+        int[] counts = update(db, rows, statistics);
+        insert(db, missing(db, rows, counts, statistics), statistics);
+    }
+
+    /**
+     * Write the indexing dates of rows to a database that may have newer data
+     * for the same records: existing rows get the last indexed and last record
+     * change dates and keep their first indexed date unless it is null. A
+     * deletion date in the rows is carried over; otherwise a stored deletion
+     * date is cleared if the record was indexed again since (deletion dates
+     * are in UTC, as written by VuFind), and kept if not. The rest of the rows
+     * are inserted. The caller is responsible for transactions; a core/id pair
+     * may only occur once.
+     * @param db         database connection
+     * @param rows       rows to write
+     * @param statistics statistics to record the statements in
+     */
+    public static void merge(Connection db, Collection<ChangeTrackerRow> rows, DatabaseStatistics statistics)
+        throws SQLException
+    {
+        if (rows.isEmpty()) {
+            return;
+        }
+        int[] counts;
+        try (
+            PreparedStatement update = db.prepareStatement(
+                "UPDATE change_tracker SET first_indexed = COALESCE(first_indexed, ?), last_indexed = ?, "
+                + "last_record_change = ?, deleted = COALESCE(?, CASE WHEN deleted <= ? THEN NULL ELSE deleted END) "
+                + "WHERE core = ? AND id = ?"
+            )
+        ) {
+            for (ChangeTrackerRow row : rows) {
+                update.setTimestamp(1, row.firstIndexed);
+                update.setTimestamp(2, row.lastIndexed);
+                update.setTimestamp(3, row.lastRecordChange);
+                update.setTimestamp(4, row.deleted);
+                update.setTimestamp(5, toUtc(row.lastIndexed));
+                update.setString(6, row.core);
+                update.setString(7, row.id);
+                update.addBatch();
+            }
+            long start = System.nanoTime();
+            counts = update.executeBatch();
+            statistics.record(DatabaseStatistics.Operation.UPDATE, start, sum(counts));
+        }
+        insert(db, missing(db, rows, counts, statistics), statistics);
+    }
+
+    /**
+     * Convert a local time, as used for the indexing dates, to UTC, as used
+     * for deletion dates.
+     * @param local local time (may be null)
+     */
+    public static Timestamp toUtc(Timestamp local)
+    {
+        if (local == null) {
+            return null;
+        }
+        return Timestamp.valueOf(
+            local.toLocalDateTime().atZone(ZoneId.systemDefault())
+                .withZoneSameInstant(ZoneOffset.UTC).toLocalDateTime()
+        );
+    }
+
+    /**
+     * Get the rows that an update batch did not find. A count of 0 does not
+     * prove that a row is missing (MySQL connections report affected rather
+     * than matched rows, see DatabaseManager, so a row that already had the
+     * written values counts 0), so the rows without a positive count are looked
+     * up with IN (...) selects.
+     * @param db         database connection
+     * @param rows       rows updated
+     * @param counts     update counts, in the order of the rows
+     * @param statistics statistics to record the statements in
+     */
+    private static List<ChangeTrackerRow> missing(Connection db, Collection<ChangeTrackerRow> rows, int[] counts,
+        DatabaseStatistics statistics) throws SQLException
+    {
+        Map<String, List<ChangeTrackerRow>> unknown = new LinkedHashMap<>();
+        int i = 0;
+        for (ChangeTrackerRow row : rows) {
+            if (counts[i++] <= 0) {
+                unknown.computeIfAbsent(row.core, core -> new ArrayList<>()).add(row);
+            }
+        }
+        List<ChangeTrackerRow> missing = new ArrayList<>();
+        for (Map.Entry<String, List<ChangeTrackerRow>> entry : unknown.entrySet()) {
+            List<String> ids = new ArrayList<>();
+            for (ChangeTrackerRow row : entry.getValue()) {
+                ids.add(row.id);
+            }
+            Map<String, ChangeTrackerRow> found = select(db, entry.getKey(), ids, SELECT_CHUNK_SIZE, statistics);
+            for (ChangeTrackerRow row : entry.getValue()) {
+                if (!found.containsKey(row.id)) {
+                    missing.add(row);
+                }
+            }
+        }
+        return missing;
+    }
+
+    /**
+     * Add up the known update counts of a batch.
+     * @param counts update counts
+     */
+    private static long sum(int[] counts)
+    {
+        long total = 0;
+        for (int count : counts) {
+            if (count > 0) {
+                total += count;
+            }
+        }
+        return total;
+    }
+}
@@ -0,0 +1,43 @@
+package org.vufind.index;
+/**
+ * Destination for change tracker rows that are not written immediately.
+ *
+ * Copyright (C) Villanova University 2026.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+import java.sql.SQLException;
+
+/**
+ * Destination for change tracker rows that are not written immediately (the
+ * write-behind queue or the journal).
+ */
+public interface ChangeTrackerSink
+{
+    /**
+     * Accept a row for writing.
+     * @param row row to write
+     * @throws SQLException if the row cannot be accepted
+     */
+    void add(ChangeTrackerRow row) throws SQLException;
+
+    /**
+     * Get the accepted row of a record that is not in the database yet, if it
+     * is still known (null otherwise).
+     * @param core core
+     * @param id   record id
+     */
+    ChangeTrackerRow getPending(String core, String id);
+}
@@ -0,0 +1,214 @@
+package org.vufind.index;
+/**
+ * Synchronize the embedded change tracker with the VuFind database.
+ *
+ * Copyright (C) Villanova University 2026.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.log4j.Logger;
+
+/**
+ * Synchronize the embedded change tracker with the VuFind database.
+ *
+ * When vufind.change_tracker.store = embedded, the indexer keeps first/last
+ * indexed dates in a local H2 database (the H2 driver jar must be added to
+ * import/lib_local). This tool moves the data between the two stores:
+ *
+ * - pull: copy the change_tracker table of the VuFind database into the
+ *   embedded database (run before indexing, so existing records keep their
+ *   first indexed dates)
+ * - push: copy every row indexed or deleted since the last push (or pull)
+ *   from the embedded database to the VuFind database (run after indexing).
+ *   First indexed dates already in the VuFind database are kept, and so are
+ *   deletion dates, unless the record has been indexed again since it was
+ *   deleted, so rows changed there since the pull are not lost.
+ *
+ * Usage (see CommandLineTool for the class path):
+ * java ... org.vufind.index.ChangeTrackerSync pull|push
+ */
+public class ChangeTrackerSync
+{
+    // Initialize logging category
+    static Logger logger = Logger.getLogger(ChangeTrackerSync.class.getName());
+
+    // Rows per batch (and per transaction):
+    private static final int BATCH_SIZE = 1000;
+
+    private final DatabaseManager databaseManager;
+
+    /**
+     * Constructor
+     * @param databaseManager database manager of the namespace to synchronize
+     */
+    public ChangeTrackerSync(DatabaseManager databaseManager)
+    {
+        this.databaseManager = databaseManager;
+    }
+
+    /**
+     * Copy the VuFind database's change_tracker table into the embedded database.
+     * @return number of rows copied
+     */
+    public long pull() throws SQLException
+    {
+        Timestamp start = Timestamp.valueOf(LocalDateTime.now());
+        long count;
+        try (
+            Connection source = databaseManager.getConnection();
+            Connection target = databaseManager.getEmbeddedConnection()
+        ) {
+            target.setAutoCommit(false);
+            try (
+                PreparedStatement merge = target.prepareStatement(
+                    "MERGE INTO change_tracker(" + ChangeTrackerRow.COLUMNS + ") KEY(core, id) VALUES(?, ?, ?, ?, ?, ?)"
+                )
+            ) {
+                count = ChangeTrackerRow.stream(
+                    source, "SELECT " + ChangeTrackerRow.COLUMNS + " FROM change_tracker",
+                    databaseManager.getStatistics(),
+                    result -> {
+                        long read = 0;
+                        while (result.next()) {
+                            ChangeTrackerRow.read(result).set(merge);
+                            merge.addBatch();
+                            if (++read % BATCH_SIZE == 0) {
+                                merge.executeBatch();
+                                target.commit();
+                            }
+                        }
+                        merge.executeBatch();
+                        return read;
+                    }
+                );
+            }
+            setSynced(target, start);
+            target.commit();
+        }
+        return count;
+    }
+
+    /**
+     * Copy rows indexed or deleted since the last synchronization from the
+     * embedded database to the VuFind database.
+     * @return number of rows copied
+     */
+    public int push() throws SQLException
+    {
+        Timestamp start = Timestamp.valueOf(LocalDateTime.now());
+        int count = 0;
+        try (
+            Connection source = databaseManager.getEmbeddedConnection();
+            Connection target = databaseManager.getConnection()
+        ) {
+            Timestamp since = getSynced(source);
+            target.setAutoCommit(false);
+            try (
+                PreparedStatement select = source.prepareStatement(
+                    "SELECT " + ChangeTrackerRow.COLUMNS + " FROM change_tracker"
+                    + (since == null ? "" : " WHERE last_indexed >= ? OR deleted >= ?")
+                )
+            ) {
+                if (since != null) {
+                    select.setTimestamp(1, since);
+                    select.setTimestamp(2, ChangeTrackerRow.toUtc(since));
+                }
+                select.setFetchSize(BATCH_SIZE);
+                List<ChangeTrackerRow> batch = new ArrayList<>(BATCH_SIZE);
+                try (ResultSet result = select.executeQuery()) {
+                    while (result.next()) {
+                        batch.add(ChangeTrackerRow.read(result));
+                        if (batch.size() == BATCH_SIZE) {
+                            count += pushBatch(target, batch);
+                            batch.clear();
+                        }
+                    }
+                }
+                count += pushBatch(target, batch);
+            }
+            source.setAutoCommit(false);
+            setSynced(source, start);
+            source.commit();
+        }
+        return count;
+    }
+
+    /**
+     * Write a batch of rows to the VuFind database in one transaction.
+     * @param target VuFind database connection
+     * @param batch  rows to write
+     * @return number of rows written
+     */
+    private int pushBatch(Connection target, List<ChangeTrackerRow> batch) throws SQLException
+    {
+        ChangeTrackerRow.merge(target, batch, databaseManager.getStatistics());
+        target.commit();
+        return batch.size();
+    }
+
+    /**
+     * Get the time of the last synchronization (null if never synchronized).
+     * @param embedded embedded database connection
+     */
+    private Timestamp getSynced(Connection embedded) throws SQLException
+    {
+        try (
+            Statement select = embedded.createStatement();
+            ResultSet result = select.executeQuery("SELECT MAX(synced) FROM change_tracker_sync")
+        ) {
+            return result.next() ? result.getTimestamp(1) : null;
+        }
+    }
+
+    /**
+     * Record the time of a synchronization; rows indexed from then on are
+     * pushed by the next push.
+     * @param embedded embedded database connection
+     * @param synced   start time of the synchronization
+     */
+    private void setSynced(Connection embedded, Timestamp synced) throws SQLException
+    {
+        try (
+            PreparedStatement merge = embedded.prepareStatement(
+                "MERGE INTO change_tracker_sync(direction, synced) KEY(direction) VALUES('last', ?)"
+            )
+        ) {
+            merge.setTimestamp(1, synced);
+            merge.executeUpdate();
+        }
+    }
+
+    public static void main(String[] args) throws Exception
+    {
+        if (args.length != 1 || !args[0].equals("pull") && !args[0].equals("push")) {
+            CommandLineTool.exitWithUsage("Usage: ChangeTrackerSync pull|push");
+        }
+        CommandLineTool.initialize();
+        DatabaseManager manager = DatabaseManager.instance();
+        ChangeTrackerSync sync = new ChangeTrackerSync(manager);
+        long count = args[0].equals("pull") ? sync.pull() : sync.push();
+        logger.info(args[0] + ": " + count + " change_tracker rows copied");
+        manager.shutdown();
+    }
+}
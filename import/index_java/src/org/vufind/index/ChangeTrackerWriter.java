@@ -0,0 +1,252 @@
+package org.vufind.index;
+/**
+ * Write-behind queue for change tracker updates.
+ *
+ * Copyright (C) Villanova University 2026.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.apache.log4j.Logger;
+
+/**
+ * Write-behind queue for change tracker updates.
+ *
+ * Indexer threads queue their change_tracker rows and continue immediately; a
+ * background thread writes them in groups of up to batchSize rows, one
+ * transaction per group, waiting at most interval milliseconds for a group to
+ * fill. When the queue is full, indexer threads wait for the writer to catch up.
+ *
+ * Rows that are queued but not yet written can be looked up with getPending(),
+ * so a record indexed twice in quick succession sees its own update. close()
+ * writes everything queued before returning. A failed write (of any kind,
+ * including failing to connect) is reported to the next caller of add() (and
+ * by close()), stopping the import instead of losing dates silently; the writer
+ * keeps draining the queue afterwards, so callers never wait for it forever.
+ */
+public class ChangeTrackerWriter implements ChangeTrackerSink, Runnable
+{
+    // Initialize logging category
+    static Logger logger = Logger.getLogger(ChangeTrackerWriter.class.getName());
+
+    // Marker queued by close():
+    private static final ChangeTrackerRow CLOSE = new ChangeTrackerRow(null, null, null, null, null, null);
+
+    private final DatabaseManager databaseManager;
+    private final BlockingQueue<ChangeTrackerRow> queue;
+    private final Map<String, ChangeTrackerRow> pending = new ConcurrentHashMap<>();
+    private final int batchSize;
+    private final long interval;
+    private final Thread thread;
+
+    // Held by add() while queuing, and exclusively by close() when closing,
+    // so that no row can be queued after the close marker:
+    private final ReadWriteLock closeLock = new ReentrantReadWriteLock();
+    private volatile boolean closed = false;
+    private volatile Throwable failure = null;
+
+    // Statistics:
+    private final LongAdder rowsWritten = new LongAdder();
+    private final LongAdder groupsWritten = new LongAdder();
+    private final LongAdder backpressureWaits = new LongAdder();
+
+    /**
+     * Constructor (starts the writer thread)
+     * @param databaseManager manager providing change tracker connections
+     * @param queueSize       maximum number of queued rows
+     * @param batchSize       maximum number of rows per transaction
+     * @param interval        maximum milliseconds to wait for a group to fill
+     */
+    public ChangeTrackerWriter(DatabaseManager databaseManager, int queueSize, int batchSize, long interval)
+    {
+        this.databaseManager = databaseManager;
+        this.queue = new ArrayBlockingQueue<>(Math.max(queueSize, 1));
+        this.batchSize = Math.max(batchSize, 1);
+        this.interval = interval;
+        thread = new Thread(this, "ChangeTrackerWriter");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static String key(String core, String id)
+    {
+        return core + '\u0000' + id;
+    }
+
+    /**
+     * Queue a row, waiting while the queue is full.
+     * @param row row to write
+     * @throws SQLException if an earlier write failed or the writer is closed
+     */
+    @Override
+    public void add(ChangeTrackerRow row) throws SQLException
+    {
+        checkFailure();
+        closeLock.readLock().lock();
+        try {
+            if (closed) {
+                throw new SQLException("Change tracker writer is closed");
+            }
+            pending.put(key(row.core, row.id), row);
+            if (!queue.offer(row)) {
+                backpressureWaits.increment();
+                queue.put(row);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pending.remove(key(row.core, row.id), row);
+            throw new SQLException("Interrupted while queuing change tracker update", e);
+        } finally {
+            closeLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get the queued row of a record that has not been written yet (null if none).
+     * @param core core
+     * @param id   record id
+     */
+    @Override
+    public ChangeTrackerRow getPending(String core, String id)
+    {
+        return pending.get(key(core, id));
+    }
+
+    /**
+     * Throw the error of a failed write, if any.
+     */
+    private void checkFailure() throws SQLException
+    {
+        if (failure != null) {
+            throw new SQLException("Writing change tracker updates failed: " + failure.getMessage(), failure);
+        }
+    }
+
+    /**
+     * Write all queued rows and stop the writer thread.
+     * @throws SQLException if a write failed
+     */
+    public void close() throws SQLException
+    {
+        boolean closing = false;
+        closeLock.writeLock().lock();
+        try {
+            if (!closed) {
+                closed = true;
+                closing = true;
+            }
+        } finally {
+            closeLock.writeLock().unlock();
+        }
+        if (closing) {
+            try {
+                queue.put(CLOSE);
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            logger.info(
+                "Change tracker writer: " + rowsWritten.sum() + " rows in " + groupsWritten.sum()
+                + " transactions, " + backpressureWaits.sum() + " waits for a full queue"
+            );
+        }
+        checkFailure();
+    }
+
+    @Override
+    public void run()
+    {
+        List<ChangeTrackerRow> group = new ArrayList<>(batchSize);
+        boolean done = false;
+        while (!done) {
+            try {
+                ChangeTrackerRow row = queue.take();
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(interval);
+                while (row != CLOSE) {
+                    group.add(row);
+                    if (group.size() >= batchSize) {
+                        break;
+                    }
+                    long wait = deadline - System.nanoTime();
+                    row = wait > 0 ? queue.poll(wait, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (row == null) {
+                        break;
+                    }
+                }
+                done = row == CLOSE;
+            } catch (InterruptedException e) {
+                // Only close() stops the writer; keep going until it does.
+            }
+            if (!group.isEmpty()) {
+                write(group);
+                group.clear();
+            }
+        }
+    }
+
+    /**
+     * Write a group of rows in one transaction.
+     * @param group rows to write
+     */
+    private void write(List<ChangeTrackerRow> group)
+    {
+        // Only the latest row of each record needs to be written:
+        Map<String, ChangeTrackerRow> latest = new LinkedHashMap<>();
+        for (ChangeTrackerRow row : group) {
+            latest.put(key(row.core, row.id), row);
+        }
+        if (failure == null) {
+            try (Connection db = databaseManager.getTrackerConnection()) {
+                db.setAutoCommit(false);
+                try {
+                    ChangeTrackerRow.upsert(db, latest.values(), databaseManager.getStatistics());
+                    db.commit();
+                } catch (SQLException | RuntimeException e) {
+                    db.rollback();
+                    throw e;
+                } finally {
+                    db.setAutoCommit(true);
+                }
+                rowsWritten.add(latest.size());
+                groupsWritten.increment();
+                for (ChangeTrackerRow row : latest.values()) {
+                    databaseManager.recordTrackerWrite(row.core, row.id);
+                }
+            } catch (Throwable e) {
+                // (Not only database errors: connecting may fail with an
+                // indexer exception, and the thread must not die with it.)
+                logger.error("Unable to write change tracker updates", e);
+                failure = e;
+            }
+        } else {
+            logger.warn("Discarding " + latest.size() + " change tracker updates after an earlier failure");
+        }
+        for (Map.Entry<String, ChangeTrackerRow> entry : latest.entrySet()) {
+            pending.remove(entry.getKey(), entry.getValue());
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package org.vufind.index;
+/**
+ * Support for command-line tools that use the indexer configuration.
+ *
+ * Copyright (C) Villanova University 2026.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import org.solrmarc.index.indexer.ValueIndexerFactory;
+
+/**
+ * Support for command-line tools that use the indexer configuration.
+ *
+ * The tools run outside of a SolrMarc import, so SolrMarc's home directories
+ * (used to find vufind.properties) must be set up first. Tools are started with
+ * VUFIND_HOME (and optionally VUFIND_LOCAL_DIR) set, from the import directory:
+ *
+ * java -cp "solrmarc_core_3.5.jar:lib/*:lib_local/*:index_java/bin" org.vufind.index.ToolName ...
+ */
+public class CommandLineTool
+{
+    /**
+     * Point SolrMarc at the local and base import directories.
+     */
+    public static void initialize()
+    {
+        List<String> homeDirs = new ArrayList<>();
+        String vufindLocal = System.getenv("VUFIND_LOCAL_DIR");
+        if (vufindLocal != null && new File(vufindLocal, "import").isDirectory()) {
+            homeDirs.add(new File(vufindLocal, "import").getAbsolutePath());
+        }
+        String vufindHome = System.getenv("VUFIND_HOME");
+        if (vufindHome == null) {
+            throw new IllegalStateException("VUFIND_HOME must be set");
+        }
+        homeDirs.add(new File(vufindHome, "import").getAbsolutePath());
+        ValueIndexerFactory.initialize(homeDirs.toArray(new String[homeDirs.size()]));
+    }
+
+    /**
+     * Print a usage message and exit.
+     * @param usage usage message
+     */
+    public static void exitWithUsage(String usage)
+    {
+        System.err.println(usage);
+        System.exit(1);
+    }
+}
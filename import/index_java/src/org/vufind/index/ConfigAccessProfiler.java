@@ -0,0 +1,194 @@
+package org.vufind.index;
+/**
+ * Configuration access profiler.
+ *
+ * Copyright (C) Villanova University 2026.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.ObjectName;
+import org.apache.log4j.Logger;
+
+/**
+ * Configuration access profiler.
+ *
+ * Counts lookups, hits, misses and time per file#section#key, plus ini file
+ * loads and parent chain walks per file. All counters are lock-free, so
+ * profiling can run on a full multi-threaded import. The statistics are
+ * published over JMX and logged as a table when the indexer shuts down; they
+ * make it easy to spot configuration lookups made once per record.
+ */
+public class ConfigAccessProfiler implements ConfigAccessProfilerMBean
+{
+    // Initialize logging category
+    static Logger logger = Logger.getLogger(ConfigAccessProfiler.class.getName());
+
+    public static final String OBJECT_NAME = "org.vufind.index:type=ConfigAccessProfiler";
+
+    /**
+     * Counters for one key (or one file).
+     */
+    static class Counters
+    {
+        final LongAdder hits = new LongAdder();
+        final LongAdder misses = new LongAdder();
+        final LongAdder nanos = new LongAdder();
+        final LongAdder fileLoads = new LongAdder();
+        final LongAdder parentWalks = new LongAdder();
+    }
+
+    private final Map<String, Counters> counters = new ConcurrentHashMap<>();
+
+    /**
+     * Get (or create) the counters for a key.
+     * @param key file#section#key (or file name)
+     */
+    private Counters getCounters(String key)
+    {
+        Counters current = counters.get(key);
+        return current != null ? current : counters.computeIfAbsent(key, k -> new Counters());
+    }
+
+    /**
+     * Record a setting or section lookup.
+     * @param filename configuration file name
+     * @param section  section name
+     * @param setting  setting name ("*" for a whole section)
+     * @param hit      was a value found?
+     * @param nanos    time taken by the lookup
+     */
+    public void recordLookup(String filename, String section, String setting, boolean hit, long nanos)
+    {
+        Counters current = getCounters(filename + "#" + section + "#" + setting);
+        (hit ? current.hits : current.misses).increment();
+        current.nanos.add(nanos);
+    }
+
+    /**
+     * Record the parsing of an ini file.
+     * @param filename configuration file name
+     */
+    public void recordFileLoad(String filename)
+    {
+        getCounters(filename).fileLoads.increment();
+    }
+
+    /**
+     * Record following a Parent_Config link while resolving a file.
+     * @param filename configuration file being resolved
+     */
+    public void recordParentWalk(String filename)
+    {
+        getCounters(filename).parentWalks.increment();
+    }
+
+    /**
+     * Register the profiler with the platform MBean server and log its table at
+     * shutdown. Profilers of namespaces other than the default one get a
+     * namespace key in their object name.
+     * @param namespace configuration namespace being profiled
+     */
+    public void register(ConfigNamespace namespace)
+    {
+        try {
+            String name = namespace.isDefault()
+                ? OBJECT_NAME : OBJECT_NAME + ",namespace=" + ObjectName.quote(namespace.getName());
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(name));
+        } catch (Exception e) {
+            logger.warn("Unable to register configuration profiler over JMX (" + e.getMessage() + ")");
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> logger.info(getTable())));
+    }
+
+    public long getLookupCount()
+    {
+        return getHitCount() + getMissCount();
+    }
+
+    public long getHitCount()
+    {
+        long total = 0;
+        for (Counters current : counters.values()) {
+            total += current.hits.sum();
+        }
+        return total;
+    }
+
+    public long getMissCount()
+    {
+        long total = 0;
+        for (Counters current : counters.values()) {
+            total += current.misses.sum();
+        }
+        return total;
+    }
+
+    public long getLookupNanos()
+    {
+        long total = 0;
+        for (Counters current : counters.values()) {
+            total += current.nanos.sum();
+        }
+        return total;
+    }
+
+    public long getFileLoadCount()
+    {
+        long total = 0;
+        for (Counters current : counters.values()) {
+            total += current.fileLoads.sum();
+        }
+        return total;
+    }
+
+    public long getParentChainWalkCount()
+    {
+        long total = 0;
+        for (Counters current : counters.values()) {
+            total += current.parentWalks.sum();
+        }
+        return total;
+    }
+
+    public String getTable()
+    {
+        List<Map.Entry<String, Counters>> rows = new ArrayList<>(counters.entrySet());
+        rows.sort((a, b) -> Long.compare(b.getValue().nanos.sum(), a.getValue().nanos.sum()));
+        StringBuilder table = new StringBuilder("Configuration access profile:\n");
+        table.append(String.format("%10s %10s %10s %10s %8s %8s  %s%n",
+            "hits", "misses", "total ms", "avg us", "loads", "parents", "file#section#key"));
+        for (Map.Entry<String, Counters> row : rows) {
+            Counters current = row.getValue();
+            long lookups = current.hits.sum() + current.misses.sum();
+            long nanos = current.nanos.sum();
+            table.append(String.format("%10d %10d %10.3f %10.3f %8d %8d  %s%n",
+                current.hits.sum(), current.misses.sum(), nanos / 1e6,
+                lookups == 0 ? 0.0 : nanos / 1e3 / lookups,
+                current.fileLoads.sum(), current.parentWalks.sum(), row.getKey()));
+        }
+        return table.toString();
+    }
+
+    public void reset()
+    {
+        counters.clear();
+    }
+}
@@ -0,0 +1,65 @@
+package org.vufind.index;
+/**
+ * JMX interface of the configuration access profiler.
+ *
+ * Copyright (C) Villanova University 2026.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+/**
+ * JMX interface of the configuration access profiler.
+ */
+public interface ConfigAccessProfilerMBean
+{
+    /**
+     * Total number of setting and section lookups.
+     */
+    long getLookupCount();
+
+    /**
+     * Number of lookups that found a value.
+     */
+    long getHitCount();
+
+    /**
+     * Number of lookups that found nothing.
+     */
+    long getMissCount();
+
+    /**
+     * Total time spent in lookups, in nanoseconds.
+     */
+    long getLookupNanos();
+
+    /**
+     * Number of ini files parsed.
+     */
+    long getFileLoadCount();
+
+    /**
+     * Number of Parent_Config links followed while resolving files.
+     */
+    long getParentChainWalkCount();
+
+    /**
+     * Per-key statistics, formatted as a table (most expensive first).
+     */
+    String getTable();
+
+    /**
+     * Clear all statistics.
+     */
+    void reset();
+}
@@ -0,0 +1,231 @@
+package org.vufind.index;
+/**
+ * Binary cache of resolved VuFind configuration files.
+ *
+ * Copyright (C) Villanova University 2026.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary cache of resolved VuFind configuration files.
+ *
+ * Stores every resolved file of a configuration snapshot together with the
+ * location, size and modification time of each ini file that went into it.
+ * At startup the cache is read with a single memory-mapped read; if every ini
+ * file still resolves to the same location with the same size and time, the
+ * resolved files are used as-is and no ini file has to be parsed.
+ */
+public class ConfigCacheFile
+{
+    private static final int MAGIC = 0x56464343; // "VFCC"
+    private static final int FORMAT_VERSION = 1;
+
+    /**
+     * Ini file that contributed to the cached configuration.
+     */
+    public static class SourceEntry
+    {
+        public final String name;
+        public final File file;
+        public final long length;
+        public final long lastModified;
+
+        public SourceEntry(String name, File file, long length, long lastModified)
+        {
+            this.name = name;
+            this.file = file;
+            this.length = length;
+            this.lastModified = lastModified;
+        }
+
+        /**
+         * Does the file on disk still match this entry?
+         */
+        public boolean isCurrent()
+        {
+            return file.length() == length && file.lastModified() == lastModified;
+        }
+    }
+
+    private final List<SourceEntry> sourceEntries;
+    private final List<ResolvedConfig> resolvedConfigs;
+
+    private ConfigCacheFile(List<SourceEntry> sourceEntries, List<ResolvedConfig> resolvedConfigs)
+    {
+        this.sourceEntries = sourceEntries;
+        this.resolvedConfigs = resolvedConfigs;
+    }
+
+    public List<SourceEntry> getSourceEntries()
+    {
+        return sourceEntries;
+    }
+
+    public List<ResolvedConfig> getResolvedConfigs()
+    {
+        return resolvedConfigs;
+    }
+
+    /**
+     * Write all resolved files of a snapshot to a cache file. The file is
+     * written under a temporary name and then moved into place, so readers
+     * never see a partial cache.
+     * @param cacheFile file to write
+     * @param snapshot  snapshot to store
+     */
+    public static void write(File cacheFile, ConfigSnapshot snapshot) throws IOException
+    {
+        File tempFile = new File(cacheFile.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+
+            Map<String, File> sourceFiles = snapshot.getSourceFiles();
+            out.writeInt(sourceFiles.size());
+            for (Map.Entry<String, File> source : sourceFiles.entrySet()) {
+                File file = source.getValue().getAbsoluteFile();
+                writeString(out, source.getKey());
+                writeString(out, file.getPath());
+                out.writeLong(file.length());
+                out.writeLong(file.lastModified());
+            }
+
+            Map<String, ResolvedConfig> resolvedCache = snapshot.getResolvedCache();
+            out.writeInt(resolvedCache.size());
+            for (ResolvedConfig config : resolvedCache.values()) {
+                writeString(out, config.getFilename());
+                out.writeInt(config.getSourceFiles().size());
+                for (File file : config.getSourceFiles()) {
+                    writeString(out, file.getPath());
+                }
+                List<String> sections = new ArrayList<>();
+                config.getSectionNames().forEach(sections::add);
+                out.writeInt(sections.size());
+                for (String section : sections) {
+                    writeString(out, section);
+                    Map<String, String> raw = config.getRawSection(section);
+                    Map<String, String> sanitized = config.getSection(section);
+                    out.writeInt(raw.size());
+                    for (Map.Entry<String, String> entry : raw.entrySet()) {
+                        writeString(out, entry.getKey());
+                        writeString(out, entry.getValue());
+                        writeString(out, sanitized.get(entry.getKey()));
+                    }
+                }
+            }
+        }
+        Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Read a cache file.
+     * @param cacheFile file to read
+     * @return cache contents, or null if the file is missing or not a cache file
+     * of the current format
+     */
+    public static ConfigCacheFile read(File cacheFile) throws IOException
+    {
+        if (!cacheFile.isFile()) {
+            return null;
+        }
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(cacheFile.toPath(), StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.remaining() < 8 || buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+            return null;
+        }
+
+        List<SourceEntry> sourceEntries = new ArrayList<>();
+        for (int i = buffer.getInt(); i > 0; i--) {
+            String name = readString(buffer);
+            File file = new File(readString(buffer));
+            sourceEntries.add(new SourceEntry(name, file, buffer.getLong(), buffer.getLong()));
+        }
+
+        List<ResolvedConfig> resolvedConfigs = new ArrayList<>();
+        for (int i = buffer.getInt(); i > 0; i--) {
+            String filename = readString(buffer);
+            List<File> files = new ArrayList<>();
+            for (int j = buffer.getInt(); j > 0; j--) {
+                files.add(new File(readString(buffer)));
+            }
+            Map<String, Map<String, String>> rawSections = new LinkedHashMap<>();
+            Map<String, Map<String, String>> sanitizedSections = new LinkedHashMap<>();
+            for (int j = buffer.getInt(); j > 0; j--) {
+                String section = readString(buffer);
+                Map<String, String> raw = new LinkedHashMap<>();
+                Map<String, String> sanitized = new LinkedHashMap<>();
+                for (int k = buffer.getInt(); k > 0; k--) {
+                    String key = readString(buffer);
+                    raw.put(key, readString(buffer));
+                    sanitized.put(key, readString(buffer));
+                }
+                rawSections.put(section, raw);
+                sanitizedSections.put(section, sanitized);
+            }
+            resolvedConfigs.add(new ResolvedConfig(filename, files, rawSections, sanitizedSections));
+        }
+        return new ConfigCacheFile(sourceEntries, resolvedConfigs);
+    }
+
+    /**
+     * Write a nullable UTF-8 string (length -1 marks null).
+     * @param out output stream
+     * @param str string to write
+     */
+    private static void writeString(DataOutputStream out, String str) throws IOException
+    {
+        if (str == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Read a string written by writeString.
+     * @param buffer input buffer
+     */
+    private static String readString(ByteBuffer buffer)
+    {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,221 @@
+package org.vufind.index;
+/**
+ * Typed VuFind configuration setting.
+ *
+ * Copyright (C) Villanova University 2026.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * Typed VuFind configuration setting.
+ *
+ * A key names a setting (file, section, setting) and knows how to parse its
+ * sanitized value. Values are parsed and validated once per configuration
+ * snapshot and cached in the ResolvedConfig, so repeated lookups through
+ * ConfigManager.getConfigSetting(ConfigKey) return the same typed object
+ * without touching the raw string. Keys are usually stored in static final
+ * fields, but keys built on the fly compare equal when they describe the
+ * same setting and type.
+ *
+ * @param <T> type of the setting value
+ */
+public class ConfigKey<T>
+{
+    private final String filename;
+    private final String section;
+    private final String setting;
+    private final String type;
+    private final Function<String, T> parser;
+    private final T defaultValue;
+    private final int hashCode;
+
+    /**
+     * Constructor
+     * @param filename     configuration file name
+     * @param section      section name within the file
+     * @param setting      setting name within the section
+     * @param type         description of the parsed type (keys with the same
+     * type description must use equivalent parsers)
+     * @param parser       parser for sanitized values; throws an
+     * IllegalArgumentException for invalid values
+     * @param defaultValue value to use if the setting is missing
+     */
+    public ConfigKey(String filename, String section, String setting, String type,
+        Function<String, T> parser, T defaultValue
+    ) {
+        this.filename = filename;
+        this.section = section;
+        this.setting = setting;
+        this.type = type;
+        this.parser = parser;
+        this.defaultValue = defaultValue;
+        this.hashCode = Objects.hash(filename, section, setting, type);
+    }
+
+    /**
+     * Create a Boolean key; values follow PHP's string to Boolean logic.
+     * @param filename     configuration file name
+     * @param section      section name within the file
+     * @param setting      setting name within the section
+     * @param defaultValue value to use if setting is missing
+     */
+    public static ConfigKey<Boolean> ofBoolean(String filename, String section, String setting, boolean defaultValue)
+    {
+        return new ConfigKey<>(filename, section, setting, "boolean", ConfigKey::parseBoolean, defaultValue);
+    }
+
+    /**
+     * Create an integer key.
+     * @param filename     configuration file name
+     * @param section      section name within the file
+     * @param setting      setting name within the section
+     * @param defaultValue value to use if setting is missing
+     */
+    public static ConfigKey<Integer> ofInteger(String filename, String section, String setting, int defaultValue)
+    {
+        return new ConfigKey<>(filename, section, setting, "integer", value -> Integer.valueOf(value.trim()), defaultValue);
+    }
+
+    /**
+     * Create a list key; the value is split on a literal delimiter (such as ","
+     * or "|") and empty entries are dropped. A missing setting is an empty list.
+     * @param filename  configuration file name
+     * @param section   section name within the file
+     * @param setting   setting name within the section
+     * @param delimiter delimiter between list entries
+     */
+    public static ConfigKey<List<String>> ofList(String filename, String section, String setting, String delimiter)
+    {
+        return new ConfigKey<>(
+            filename, section, setting, "list" + delimiter, value -> splitList(value, delimiter),
+            Collections.emptyList()
+        );
+    }
+
+    /**
+     * Create a regular expression key.
+     * @param filename configuration file name
+     * @param section  section name within the file
+     * @param setting  setting name within the section
+     * @param flags    flags for Pattern.compile
+     */
+    public static ConfigKey<Pattern> ofPattern(String filename, String section, String setting, int flags)
+    {
+        return new ConfigKey<>(
+            filename, section, setting, "pattern" + flags, value -> Pattern.compile(value, flags), null
+        );
+    }
+
+    /**
+     * Convert a string to a Boolean; match PHP's string to Boolean logic.
+     * @param value string to convert
+     */
+    public static Boolean parseBoolean(String value)
+    {
+        switch (value.trim().toLowerCase()) {
+        case "false":
+        case "0":
+        case "":
+            return Boolean.FALSE;
+        }
+        return Boolean.TRUE;
+    }
+
+    /**
+     * Split a delimited string into an unmodifiable list, dropping empty entries.
+     * @param value     string to split
+     * @param delimiter literal delimiter
+     */
+    private static List<String> splitList(String value, String delimiter)
+    {
+        List<String> list = new ArrayList<>();
+        int start = 0;
+        while (start <= value.length()) {
+            int end = value.indexOf(delimiter, start);
+            if (end < 0) {
+                end = value.length();
+            }
+            if (end > start) {
+                list.add(value.substring(start, end));
+            }
+            start = end + delimiter.length();
+        }
+        return Collections.unmodifiableList(list);
+    }
+
+    public String getFilename()
+    {
+        return filename;
+    }
+
+    public String getSection()
+    {
+        return section;
+    }
+
+    public String getSetting()
+    {
+        return setting;
+    }
+
+    public T getDefaultValue()
+    {
+        return defaultValue;
+    }
+
+    /**
+     * Parse a sanitized value.
+     * @param value value to parse
+     * @throws IllegalArgumentException if the value is not valid for this key
+     */
+    public T parse(String value)
+    {
+        return parser.apply(value);
+    }
+
+    @Override
+    public boolean equals(Object other)
+    {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof ConfigKey)) {
+            return false;
+        }
+        ConfigKey<?> key = (ConfigKey<?>)other;
+        return hashCode == key.hashCode && filename.equals(key.filename)
+            && section.equals(key.section) && setting.equals(key.setting)
+            && type.equals(key.type);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return hashCode;
+    }
+
+    @Override
+    public String toString()
+    {
+        return filename + " [" + section + "] " + setting;
+    }
+}
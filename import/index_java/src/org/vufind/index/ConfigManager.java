@@ -19,14 +19,18 @@ package org.vufind.index;
  */
 
 import java.io.File;
-import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import org.solrmarc.index.indexer.ValueIndexerFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
 import org.solrmarc.tools.PropertyUtils;
 import org.solrmarc.tools.SolrMarcIndexerException;
-import org.ini4j.Ini;
 import org.apache.log4j.Logger;
 
 /**
@@ -36,49 +40,297 @@ public class ConfigManager
 {
     // Initialize logging category
     static Logger logger = Logger.getLogger(ConfigManager.class.getName());
-    private static Map<String, Ini> configCache = new ConcurrentHashMap<>();
-    private static Map<String, ConcurrentHashMap<String, String>> sanitizedConfigCache = new ConcurrentHashMap<>();
+    private volatile ConfigSnapshot snapshot = new ConfigSnapshot(1);
+    private ConfigWatcher watcher = null;
     private Properties vuFindConfigs = null;
-    private static ThreadLocal<ConfigManager> managerCache =
-        new ThreadLocal<ConfigManager>()
-        {
-            @Override
-            protected ConfigManager initialValue()
-            {
-                return new ConfigManager();
-            }
-        };
+
+    // Directories searched for configuration files, and the result of searching
+    // them for each file name (including names found in no directory):
+    private volatile List<File> configDirectories = null;
+    private final Map<String, File> configPathCache = new ConcurrentHashMap<>();
+
+    // Binary cache of resolved files (null if disabled), and the names of the
+    // files loaded from it (null if it was missing or out of date):
+    private File configCacheFile = null;
+    private Set<String> cachedFilenames = null;
+
+    // Lookup profiler (null unless vufind.config.profile is enabled):
+    private ConfigAccessProfiler profiler = null;
+
+    // Namespace whose configuration this manager loads, and the values derived
+    // from that configuration:
+    private final ConfigNamespace namespace;
+    private final DerivedArtifactRegistry artifactRegistry = new DerivedArtifactRegistry(this);
+
+    // Has the configuration warm-up (vufind.config.warmup) been started?
+    private final AtomicBoolean warmupStarted = new AtomicBoolean(false);
+
+    // A single manager is shared by all indexer threads of a namespace; the
+    // default namespace's manager is created on first use by the JVM's class
+    // initialization, so no locking is needed afterwards.
+    private static class InstanceHolder
+    {
+        static final ConfigManager INSTANCE = new ConfigManager();
+    }
+
+    // Managers for namespaces other than the default:
+    private static final Map<ConfigNamespace, ConfigManager> namespaceManagers = new ConcurrentHashMap<>();
 
     public ConfigManager()
     {
+        this(ConfigNamespace.getDefault());
+    }
+
+    /**
+     * Constructor
+     * @param namespace namespace whose configuration should be loaded
+     */
+    public ConfigManager(ConfigNamespace namespace)
+    {
+        this.namespace = namespace;
         try {
-            vuFindConfigs = PropertyUtils.loadProperties(ValueIndexerFactory.instance().getHomeDirs(), "vufind.properties");
+            vuFindConfigs = PropertyUtils.loadProperties(namespace.getImportDirs(), "vufind.properties");
         } catch (IllegalArgumentException e) {
             // If the properties load failed, don't worry about it -- we'll use defaults.
         }
+        if (Boolean.parseBoolean(PropertyUtils.getProperty(vuFindConfigs, "vufind.config.profile", "false"))) {
+            profiler = new ConfigAccessProfiler();
+            profiler.register(namespace);
+        }
+        String cachePath = PropertyUtils.getProperty(vuFindConfigs, "vufind.config.cache_file");
+        if (cachePath != null && !cachePath.isEmpty()) {
+            // Namespaces must not overwrite each other's cache:
+            configCacheFile = new File(
+                namespace.isDefault() ? cachePath : cachePath + "." + Integer.toHexString(namespace.hashCode())
+            );
+            loadConfigCache();
+            Runtime.getRuntime().addShutdownHook(new Thread(this::saveConfigCache));
+        }
+        if (Boolean.parseBoolean(PropertyUtils.getProperty(vuFindConfigs, "vufind.config.watch", "false"))) {
+            startWatcher();
+        }
     }
 
+    /**
+     * Get the manager for the current thread's configuration namespace.
+     */
     public static ConfigManager instance()
     {
-        return managerCache.get();
+        ConfigNamespace namespace = ConfigNamespace.current();
+        ConfigManager manager = namespace.isDefault()
+            ? InstanceHolder.INSTANCE : namespaceManagers.computeIfAbsent(namespace, ConfigManager::new);
+        if (!manager.warmupStarted.get()) {
+            manager.warmUp();
+        }
+        return manager;
     }
 
     /**
-     * Given the base name of a configuration file, locate the full path.
-     * @param filename base name of a configuration file
+     * Start the configuration warm-up of the current thread's namespace now,
+     * unless it has already run. The tools the warm-up covers call this from
+     * their constructors: SolrMarc creates them while reading the indexer
+     * specifications, so the warm-up finishes before the first record.
      */
-    private File findConfigFile(String filename) throws IllegalStateException
+    public static void startWarmUp()
+    {
+        instance();
+    }
+
+    /**
+     * Warm up the configuration used by the indexer properties files listed in
+     * the vufind.config.warmup property. This runs once, on the first call to
+     * instance() (or startWarmUp()), after the manager itself has been
+     * constructed (warm-up tasks call instance() from other threads).
+     */
+    private void warmUp()
+    {
+        if (!warmupStarted.compareAndSet(false, true)) {
+            return;
+        }
+        String specFiles = PropertyUtils.getProperty(vuFindConfigs, "vufind.config.warmup");
+        if (specFiles == null || specFiles.trim().isEmpty()) {
+            return;
+        }
+        List<String> files = new ArrayList<>();
+        for (String specFile : specFiles.split(",")) {
+            if (!specFile.trim().isEmpty()) {
+                files.add(specFile.trim());
+            }
+        }
+        ConfigWarmup.warmUp(files);
+    }
+
+    /**
+     * Get the namespace whose configuration this manager loads.
+     */
+    public ConfigNamespace getNamespace()
+    {
+        return namespace;
+    }
+
+    /**
+     * Get an indexer setting from vufind.properties.
+     * @param name         property name
+     * @param defaultValue value to use if the property is missing
+     */
+    public String getIndexerProperty(String name, String defaultValue)
+    {
+        return PropertyUtils.getProperty(vuFindConfigs, name, defaultValue);
+    }
+
+    /**
+     * Get the registry of values derived from this manager's configuration.
+     */
+    public DerivedArtifactRegistry getArtifactRegistry()
+    {
+        return artifactRegistry;
+    }
+
+    /**
+     * Start watching configuration files for changes (if not already started).
+     */
+    private synchronized void startWatcher()
+    {
+        if (watcher != null) {
+            return;
+        }
+        try {
+            watcher = new ConfigWatcher(this);
+        } catch (IOException e) {
+            logger.warn("Unable to watch configuration files for changes (" + e.getMessage() + ")");
+            return;
+        }
+        // Watch the configuration directories too, so that newly created local
+        // copies of base files are noticed:
+        for (File directory : getConfigDirectories()) {
+            if (directory.isDirectory()) {
+                watcher.watchDirectory(directory.toPath());
+            }
+        }
+        for (ResolvedConfig config : snapshot.getResolvedCache().values()) {
+            watcher.watch(config);
+        }
+        watcher.start();
+    }
+
+    /**
+     * Fill the current snapshot from the binary configuration cache, provided
+     * that every ini file it was built from is unchanged and still found in the
+     * same place.
+     */
+    private void loadConfigCache()
+    {
+        try {
+            ConfigCacheFile cache = ConfigCacheFile.read(configCacheFile);
+            if (cache == null) {
+                return;
+            }
+            for (ConfigCacheFile.SourceEntry entry : cache.getSourceEntries()) {
+                if (!entry.file.equals(findConfigFile(entry.name).getAbsoluteFile()) || !entry.isCurrent()) {
+                    logger.info("Configuration cache " + configCacheFile + " is out of date; rebuilding");
+                    return;
+                }
+            }
+            for (ConfigCacheFile.SourceEntry entry : cache.getSourceEntries()) {
+                snapshot.getSourceFiles().put(entry.name, entry.file);
+            }
+            for (ResolvedConfig config : cache.getResolvedConfigs()) {
+                snapshot.getResolvedCache().put(config.getFilename(), config);
+            }
+            cachedFilenames = new HashSet<>(snapshot.getResolvedFilenames());
+        } catch (Exception e) {
+            logger.warn("Unable to read configuration cache " + configCacheFile + " (" + e.getMessage() + ")");
+        }
+    }
+
+    /**
+     * Write the current snapshot to the binary configuration cache, unless the
+     * cache already holds exactly this configuration.
+     */
+    private void saveConfigCache()
+    {
+        ConfigSnapshot current = snapshot;
+        if (cachedFilenames != null && current.getVersion() == 1
+            && cachedFilenames.equals(current.getResolvedFilenames())
+        ) {
+            return;
+        }
+        try {
+            ConfigCacheFile.write(configCacheFile, current);
+        } catch (IOException e) {
+            logger.warn("Unable to write configuration cache " + configCacheFile + " (" + e.getMessage() + ")");
+        }
+    }
+
+    /**
+     * Get the current configuration snapshot.
+     */
+    public ConfigSnapshot getSnapshot()
+    {
+        return snapshot;
+    }
+
+    /**
+     * Get the version number of the current configuration snapshot; this
+     * changes every time the configuration is reloaded.
+     */
+    public long getConfigVersion()
+    {
+        return snapshot.getVersion();
+    }
+
+    /**
+     * Re-read every configuration file used by the current snapshot into a new
+     * snapshot, then swap it in. Lookups in progress keep using the old snapshot;
+     * if the new configuration cannot be loaded, the old one stays active.
+     */
+    public void reloadConfiguration()
+    {
+        ConfigSnapshot current = snapshot;
+        ConfigSnapshot next = new ConfigSnapshot(current.getVersion() + 1);
+        // Files may have been added or removed, so search for them again:
+        configPathCache.clear();
+        try {
+            for (String filename : new ArrayList<>(current.getResolvedFilenames())) {
+                getResolvedConfig(next, filename);
+            }
+        } catch (Throwable e) {
+            logger.error("Configuration reload failed; keeping version " + current.getVersion()
+                + " (" + e.getMessage() + ")");
+            return;
+        }
+        snapshot = next;
+        logger.info("Loaded configuration version " + next.getVersion());
+    }
+
+    /**
+     * Get the directories that may contain configuration files, in the order in
+     * which they should be searched.
+     */
+    private List<File> getConfigDirectories() throws IllegalStateException
     {
-        // Find VuFind's home directory in the environment; if it's not available,
-        // we cannot proceed:
-        String vufindHome = System.getenv("VUFIND_HOME");
+        List<File> directories = configDirectories;
+        if (directories == null) {
+            directories = configDirectories = buildConfigDirectories();
+        }
+        return directories;
+    }
+
+    /**
+     * Build the list returned by getConfigDirectories.
+     */
+    private List<File> buildConfigDirectories() throws IllegalStateException
+    {
+        // Find VuFind's home directory in the namespace (or the environment); if
+        // it's not available, we cannot proceed:
+        String vufindHome = namespace.getVufindHome();
         if (vufindHome == null) {
             // this shouldn't happen since import-marc.sh and .bat always set VUFIND_HOME
             throw new IllegalStateException("VUFIND_HOME must be set");
         }
 
-        // Check for VuFind's local directory environment variable:
-        String vufindLocal = System.getenv("VUFIND_LOCAL_DIR");
+        // Check for VuFind's local directory:
+        String vufindLocal = namespace.getVufindLocal();
 
         // If VUFIND_LOCAL_DIR is not set, issue a warning and try to derive it from VUFIND_HOME
         if (vufindLocal == null || vufindLocal.length() == 0) {
@@ -92,59 +344,63 @@ public class ConfigManager
         );
 
         // Try several different locations for the file -- VuFind local dir, VuFind base dir, legacy base dir.
-        File file;
-        if (vufindLocal != null) {
-            file = new File(vufindLocal + "/" + relativeConfigPath + "/" + filename);
-            if (file.exists()) {
-                return file;
-            }
-        }
-        file = new File(vufindHome + "/" + relativeConfigPath + "/" + filename);
-        if (file.exists()) {
-            return file;
-        }
-        file = new File(vufindHome + "/web/conf/" + filename); // legacy from VuFind 1.x
-        return file;
+        List<File> directories = new ArrayList<>();
+        directories.add(new File(vufindLocal + "/" + relativeConfigPath));
+        directories.add(new File(vufindHome + "/" + relativeConfigPath));
+        directories.add(new File(vufindHome + "/web/conf")); // legacy from VuFind 1.x
+        return directories;
     }
 
     /**
-     * Sanitize a VuFind configuration setting.
-     * @param str configuration setting
+     * Given the base name of a configuration file, locate the full path.
+     * @param filename base name of a configuration file
      */
-    private String sanitizeConfigSetting(String str)
+    private File findConfigFile(String filename) throws IllegalStateException
     {
-        // Work on a copy of the string.
-        // We do not want the sanitizer to update the cache, because it might
-        // cause problems when executing them multiple times, like
-        // e.g. in multithreaded scenarios.
-        String retVal = new String(str);
-
-        // Drop comments if necessary; if the semi-colon is inside quotes, leave
-        // it alone. TODO: handle complex cases with comment AND quoted semi-colon
-        int pos = retVal.indexOf(';');
-        if (pos >= 0 && !retVal.matches("\"[^\"]*;[^\"]*\"")) {
-            retVal = retVal.substring(0, pos).trim();
+        File file = configPathCache.get(filename);
+        if (file == null) {
+            file = searchConfigDirectories(filename);
+            configPathCache.put(filename, file);
         }
+        return file;
+    }
 
-        // Strip wrapping quotes if necessary (the ini reader won't do this for us):
-        if (retVal.startsWith("\"")) {
-            retVal = retVal.substring(1, retVal.length());
-        }
-        if (retVal.endsWith("\"")) {
-            retVal = retVal.substring(0, retVal.length() - 1);
+    /**
+     * Search the configuration directories for a file.
+     * @param filename base name of a configuration file
+     */
+    private File searchConfigDirectories(String filename) throws IllegalStateException
+    {
+        List<File> directories = getConfigDirectories();
+        for (File directory : directories) {
+            File file = new File(directory, filename);
+            if (file.exists()) {
+                return file;
+            }
         }
-        return retVal;
+        // Fall back to the legacy location:
+        return new File(directories.get(directories.size() - 1), filename);
     }
 
     /**
      * Load an ini file.
      * @param filename name of {@code .ini} file
      */
-    public Ini loadConfigFile(String filename)
+    public IniFile loadConfigFile(String filename)
+    {
+        return loadConfigFile(snapshot, filename);
+    }
+
+    /**
+     * Load an ini file into a snapshot.
+     * @param target   snapshot to load into
+     * @param filename name of {@code .ini} file
+     */
+    private IniFile loadConfigFile(ConfigSnapshot target, String filename)
     {
+        Map<String, IniFile> configCache = target.getIniCache();
         // Retrieve the file if it is not already cached.
         if (!configCache.containsKey(filename)) {
-            Ini ini = new Ini();
             File configFile = null;
             try {
                 configFile = findConfigFile(filename);
@@ -157,10 +413,12 @@ public class ConfigManager
                 );
             }
             try {
-                if (configFile != null) {
-                    ini.load(new FileReader(configFile));
-                    configCache.putIfAbsent(filename, ini);
+                IniFile ini = IniFile.load(configFile);
+                if (profiler != null) {
+                    profiler.recordFileLoad(filename);
                 }
+                target.getSourceFiles().putIfAbsent(filename, configFile);
+                configCache.putIfAbsent(filename, ini);
             } catch (Throwable e) {
                 dieWithError(
                     "Unable to access " + configFile.getAbsolutePath()
@@ -172,63 +430,120 @@ public class ConfigManager
     }
 
     /**
-     * Get a section from a VuFind configuration file and sanitize all the values.
-     * @param filename configuration file name
-     * @param section section name within the file
+     * Copy the raw and sanitized sections of an ini file into merged section maps.
+     * @param raw       raw section map being built
+     * @param sanitized sanitized section map being built
+     * @param ini       ini file to copy from
+     * @param override  should values from the ini replace values already merged?
      */
-    public Map<String, String> getConfigSection(String filename, String section)
-    {
-        String sanitizedCacheKey = filename + "#" + section;
-        return sanitizedConfigCache.computeIfAbsent(sanitizedCacheKey, retVal -> {
-            Map<String, String> rawSection = getRawConfigSection(filename, section);
-            if (rawSection == null) {
-                return new ConcurrentHashMap<>();
-            }
-
-            // Sanitize a copy of the section.
-            // We do not want the sanitizer to update the cache, because it might
-            // cause problems when executing them multiple times, like
-            // e.g. in multithreaded scenarios.
-            ConcurrentHashMap<String, String> sanitizedSection = new ConcurrentHashMap<>();
-            for (Map.Entry<String, String> entry : rawSection.entrySet()) {
-                sanitizedSection.put(entry.getKey(), sanitizeConfigSetting(entry.getValue()));
+    private void mergeSections(Map<String, Map<String, String>> raw,
+        Map<String, Map<String, String>> sanitized, IniFile ini, boolean override
+    ) {
+        for (String sectionName : ini.getSectionNames()) {
+            Map<String, String> rawTarget = raw.computeIfAbsent(sectionName, k -> new LinkedHashMap<>());
+            Map<String, String> sanitizedTarget = sanitized.computeIfAbsent(sectionName, k -> new LinkedHashMap<>());
+            Map<String, String> sanitizedSection = ini.getSection(sectionName);
+            for (Map.Entry<String, String> entry : ini.getRawSection(sectionName).entrySet()) {
+                if (override || !rawTarget.containsKey(entry.getKey())) {
+                    rawTarget.put(entry.getKey(), entry.getValue());
+                    sanitizedTarget.put(entry.getKey(), sanitizedSection.get(entry.getKey()));
+                }
             }
-            return sanitizedSection;
-        });
+        }
     }
 
     /**
-     * Get a section from a VuFind configuration file.
+     * Resolve a configuration file: walk its Parent_Config chain, apply its
+     * Extra_Config local overrides and sanitize the merged values.
      * @param filename configuration file name
-     * @param section section name within the file
      */
-    public Map<String, String> getRawConfigSection(String filename, String section)
+    private ResolvedConfig resolveConfigFile(ConfigSnapshot target, String filename)
     {
-        // Grab the ini file.
-        Ini ini = loadConfigFile(filename);
-        Map<String, String> retVal = ini.get(section);
+        List<File> sourceFiles = new ArrayList<>();
+        IniFile ini = loadConfigFile(target, filename);
+        sourceFiles.add(target.getSourceFiles().get(filename));
+        Map<String, Map<String, String>> rawSections = new LinkedHashMap<>();
+        Map<String, Map<String, String>> sanitizedSections = new LinkedHashMap<>();
+        mergeSections(rawSections, sanitizedSections, ini, false);
 
+        // Parent values only fill in keys that the child does not define:
         String parent = ini.get("Parent_Config", "path");
         while (parent != null) {
-            Ini parentIni = loadConfigFile(parent);
-            Map<String, String> parentSection = parentIni.get(section);
-            for (String key : parentSection.keySet()) {
-                if (!retVal.containsKey(key)) {
-                    retVal.put(key, parentSection.get(key));
-                }
+            if (profiler != null) {
+                profiler.recordParentWalk(filename);
             }
+            IniFile parentIni = loadConfigFile(target, parent);
+            sourceFiles.add(target.getSourceFiles().get(parent));
+            mergeSections(rawSections, sanitizedSections, parentIni, false);
             parent = parentIni.get("Parent_Config", "path");
         }
 
         // Check to see if we need to worry about an override file:
         String override = ini.get("Extra_Config", "local_overrides");
         if (override != null) {
-            Map<String, String> overrideSection = loadConfigFile(override).get(section);
-            for (String key : overrideSection.keySet()) {
-                retVal.put(key, overrideSection.get(key));
-            }
+            mergeSections(rawSections, sanitizedSections, loadConfigFile(target, override), true);
+            sourceFiles.add(target.getSourceFiles().get(override));
         }
 
+        ResolvedConfig resolved = new ResolvedConfig(filename, sourceFiles, rawSections, sanitizedSections);
+        if (watcher != null) {
+            watcher.watch(resolved);
+        }
+        return resolved;
+    }
+
+    /**
+     * Get a fully resolved VuFind configuration file. Each file is resolved only
+     * once; subsequent calls return the same immutable object.
+     * @param filename configuration file name
+     */
+    public ResolvedConfig getResolvedConfig(String filename)
+    {
+        return getResolvedConfig(snapshot, filename);
+    }
+
+    /**
+     * Get a fully resolved VuFind configuration file from a snapshot.
+     * @param target   snapshot to read from (and resolve into, if necessary)
+     * @param filename configuration file name
+     */
+    private ResolvedConfig getResolvedConfig(ConfigSnapshot target, String filename)
+    {
+        Map<String, ResolvedConfig> resolvedCache = target.getResolvedCache();
+        ResolvedConfig resolved = resolvedCache.get(filename);
+        return resolved != null
+            ? resolved : resolvedCache.computeIfAbsent(filename, f -> resolveConfigFile(target, f));
+    }
+
+    /**
+     * Get a section from a VuFind configuration file and sanitize all the values.
+     * @param filename configuration file name
+     * @param section section name within the file
+     */
+    public Map<String, String> getConfigSection(String filename, String section)
+    {
+        if (profiler == null) {
+            return getResolvedConfig(filename).getSection(section);
+        }
+        long start = System.nanoTime();
+        Map<String, String> retVal = getResolvedConfig(filename).getSection(section);
+        profiler.recordLookup(filename, section, "*", !retVal.isEmpty(), System.nanoTime() - start);
+        return retVal;
+    }
+
+    /**
+     * Get a section from a VuFind configuration file.
+     * @param filename configuration file name
+     * @param section section name within the file
+     */
+    public Map<String, String> getRawConfigSection(String filename, String section)
+    {
+        if (profiler == null) {
+            return getResolvedConfig(filename).getRawSection(section);
+        }
+        long start = System.nanoTime();
+        Map<String, String> retVal = getResolvedConfig(filename).getRawSection(section);
+        profiler.recordLookup(filename, section, "*", retVal != null, System.nanoTime() - start);
         return retVal;
     }
 
@@ -250,8 +565,13 @@ public class ConfigManager
      */
     public String getConfigSetting(String filename, String section, String setting)
     {
-        String retVal = getRawConfigSetting(filename, section, setting);
-        return retVal == null ? retVal : sanitizeConfigSetting(retVal);
+        if (profiler == null) {
+            return getResolvedConfig(filename).getSetting(section, setting);
+        }
+        long start = System.nanoTime();
+        String retVal = getResolvedConfig(filename).getSetting(section, setting);
+        profiler.recordLookup(filename, section, setting, retVal != null, System.nanoTime() - start);
+        return retVal;
     }
 
     /**
@@ -262,8 +582,13 @@ public class ConfigManager
      */
     public String getRawConfigSetting(String filename, String section, String setting)
     {
-        Map<String, String> sectionMap = getRawConfigSection(filename, section);
-        return sectionMap == null ? null : sectionMap.get(setting);
+        if (profiler == null) {
+            return getResolvedConfig(filename).getRawSetting(section, setting);
+        }
+        long start = System.nanoTime();
+        String retVal = getResolvedConfig(filename).getRawSetting(section, setting);
+        profiler.recordLookup(filename, section, setting, retVal != null, System.nanoTime() - start);
+        return retVal;
     }
 
     /**
@@ -286,16 +611,32 @@ public class ConfigManager
     public boolean getBooleanConfigSetting(String filename, String section, String setting, boolean defaultValue)
     {
         String config = getConfigSetting(filename, section, setting);
-        if (config == null) {
-            return defaultValue;
-        }
-        switch (config.trim().toLowerCase()) {
-        case "false":
-        case "0":
-        case "":
-            return false;
+        return config == null ? defaultValue : ConfigKey.parseBoolean(config);
+    }
+
+    /**
+     * Get a typed setting from a VuFind configuration file. The value is parsed
+     * once per configuration snapshot; an invalid value is a fatal error.
+     * @param key setting to look up
+     */
+    public <T> T getConfigSetting(ConfigKey<T> key)
+    {
+        try {
+            if (profiler == null) {
+                return getResolvedConfig(key.getFilename()).getTypedSetting(key);
+            }
+            long start = System.nanoTime();
+            ResolvedConfig config = getResolvedConfig(key.getFilename());
+            T retVal = config.getTypedSetting(key);
+            profiler.recordLookup(
+                key.getFilename(), key.getSection(), key.getSetting(),
+                config.getSetting(key.getSection(), key.getSetting()) != null, System.nanoTime() - start
+            );
+            return retVal;
+        } catch (IllegalArgumentException e) {
+            dieWithError("Invalid value for " + key + " (" + e.getMessage() + ")");
+            return null;
         }
-        return true;
     }
 
     /**
@@ -0,0 +1,214 @@
+package org.vufind.index;
+/**
+ * VuFind configuration namespace.
+ *
+ * Copyright (C) Villanova University 2026.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import org.solrmarc.index.indexer.ValueIndexerFactory;
+
+/**
+ * VuFind configuration namespace.
+ *
+ * A namespace identifies one VuFind instance (its VUFIND_HOME and
+ * VUFIND_LOCAL_DIR). ConfigManager, DatabaseManager, the update date tracker
+ * and the tool containers keep separate state for each namespace.
+ *
+ * SolrMarc itself runs one indexing job per JVM, so a SolrMarc run always
+ * uses a single namespace: the one given by the vufind.namespace.local_dir
+ * (and optionally vufind.namespace.home) system properties, e.g.
+ *
+ * java -Dvufind.namespace.local_dir=/usr/local/vufind/other ... (SolrMarc)
+ *
+ * or otherwise the default one, which reads VUFIND_HOME and VUFIND_LOCAL_DIR
+ * from the environment as before. A namespace reads vufind.properties and the
+ * warm-up specifications from the import directories of its instance.
+ *
+ * Code that embeds the indexing tools can work with several instances in one
+ * JVM by selecting the namespace of each thread with setCurrent(). The
+ * selection is inherited by threads created afterwards, but not by threads
+ * that already exist (such as the workers of a shared pool), so tasks handed
+ * to those must select it themselves, e.g. with call().
+ */
+public class ConfigNamespace
+{
+    private static final ConfigNamespace DEFAULT = new ConfigNamespace("default", null, null);
+
+    // Namespace of threads that never select one (see the class comment):
+    private static final ConfigNamespace STARTUP = getStartupNamespace();
+
+    private static final InheritableThreadLocal<ConfigNamespace> current =
+        new InheritableThreadLocal<ConfigNamespace>()
+        {
+            @Override
+            protected ConfigNamespace initialValue()
+            {
+                return STARTUP;
+            }
+        };
+
+    private final String name;
+    private final String vufindHome;
+    private final String vufindLocal;
+
+    /**
+     * Constructor
+     * @param name        unique namespace name
+     * @param vufindHome  VuFind home directory (null to use VUFIND_HOME)
+     * @param vufindLocal VuFind local directory (null to use VUFIND_LOCAL_DIR)
+     */
+    public ConfigNamespace(String name, String vufindHome, String vufindLocal)
+    {
+        this.name = name;
+        this.vufindHome = vufindHome;
+        this.vufindLocal = vufindLocal;
+    }
+
+    /**
+     * Create a namespace for a local directory, sharing VUFIND_HOME from the
+     * environment. The directory path is used as the namespace name.
+     * @param vufindLocal VuFind local directory
+     */
+    public static ConfigNamespace forLocalDir(String vufindLocal)
+    {
+        return new ConfigNamespace(vufindLocal, null, vufindLocal);
+    }
+
+    /**
+     * Get the namespace selected by system properties when the indexer started
+     * (the default namespace if none).
+     */
+    private static ConfigNamespace getStartupNamespace()
+    {
+        String vufindLocal = System.getProperty("vufind.namespace.local_dir", "").trim();
+        if (vufindLocal.isEmpty()) {
+            return DEFAULT;
+        }
+        String vufindHome = System.getProperty("vufind.namespace.home", "").trim();
+        return new ConfigNamespace(vufindLocal, vufindHome.isEmpty() ? null : vufindHome, vufindLocal);
+    }
+
+    /**
+     * Get the default namespace (configured by the environment).
+     */
+    public static ConfigNamespace getDefault()
+    {
+        return DEFAULT;
+    }
+
+    /**
+     * Get the namespace of the current thread.
+     */
+    public static ConfigNamespace current()
+    {
+        return current.get();
+    }
+
+    /**
+     * Select the namespace of the current thread (and of threads it starts).
+     * @param namespace namespace to select (null for the default namespace)
+     */
+    public static void setCurrent(ConfigNamespace namespace)
+    {
+        current.set(namespace == null ? DEFAULT : namespace);
+    }
+
+    /**
+     * Run a task with this namespace selected, then restore the previous one.
+     * @param task task to run
+     */
+    public <T> T call(Callable<T> task) throws Exception
+    {
+        ConfigNamespace previous = current();
+        setCurrent(this);
+        try {
+            return task.call();
+        } finally {
+            setCurrent(previous);
+        }
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * Is this the default namespace? (Namespaces are identified by name, like
+     * in equals().)
+     */
+    public boolean isDefault()
+    {
+        return name.equals(DEFAULT.name);
+    }
+
+    /**
+     * Get the VuFind home directory (null if unknown).
+     */
+    public String getVufindHome()
+    {
+        return vufindHome != null ? vufindHome : System.getenv("VUFIND_HOME");
+    }
+
+    /**
+     * Get the VuFind local directory (null if unknown).
+     */
+    public String getVufindLocal()
+    {
+        return vufindLocal != null ? vufindLocal : System.getenv("VUFIND_LOCAL_DIR");
+    }
+
+    /**
+     * Get the directories to read indexer properties files from: SolrMarc's
+     * home directories for the default namespace, otherwise the import
+     * directories of the namespace's local and home directories.
+     */
+    public String[] getImportDirs()
+    {
+        if (isDefault()) {
+            return ValueIndexerFactory.instance().getHomeDirs();
+        }
+        List<String> dirs = new ArrayList<>();
+        for (String dir : new String[] { getVufindLocal(), getVufindHome() }) {
+            if (dir != null && new File(dir, "import").isDirectory()) {
+                dirs.add(new File(dir, "import").getAbsolutePath());
+            }
+        }
+        return dirs.toArray(new String[dirs.size()]);
+    }
+
+    @Override
+    public boolean equals(Object other)
+    {
+        return other instanceof ConfigNamespace && name.equals(((ConfigNamespace)other).name);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return name.hashCode();
+    }
+
+    @Override
+    public String toString()
+    {
+        return name;
+    }
+}
@@ -0,0 +1,107 @@
+package org.vufind.index;
+/**
+ * Versioned set of loaded VuFind configuration files.
+ *
+ * Copyright (C) Villanova University 2026.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+import java.io.File;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Versioned set of loaded VuFind configuration files.
+ *
+ * The ConfigManager publishes one snapshot at a time. When configuration files
+ * change on disk, a complete replacement snapshot is built and swapped in, so
+ * a ResolvedConfig obtained from a snapshot never changes underneath its user.
+ * Files that have not been requested yet are added to the current snapshot
+ * lazily.
+ */
+public class ConfigSnapshot
+{
+    private final long version;
+    private final Map<String, IniFile> iniCache = new ConcurrentHashMap<>();
+    private final Map<String, File> sourceFiles = new ConcurrentHashMap<>();
+    private final Map<String, ResolvedConfig> resolvedCache = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor
+     * @param version snapshot version number
+     */
+    public ConfigSnapshot(long version)
+    {
+        this.version = version;
+    }
+
+    /**
+     * Get the version number of this snapshot.
+     */
+    public long getVersion()
+    {
+        return version;
+    }
+
+    /**
+     * Cache of parsed ini files (file name => parsed file).
+     */
+    Map<String, IniFile> getIniCache()
+    {
+        return iniCache;
+    }
+
+    /**
+     * Locations the parsed ini files were read from (file name => file).
+     */
+    Map<String, File> getSourceFiles()
+    {
+        return sourceFiles;
+    }
+
+    /**
+     * Cache of resolved configuration files (file name => resolved file).
+     */
+    Map<String, ResolvedConfig> getResolvedCache()
+    {
+        return resolvedCache;
+    }
+
+    /**
+     * Get the names of all files resolved in this snapshot.
+     */
+    public Set<String> getResolvedFilenames()
+    {
+        return resolvedCache.keySet();
+    }
+
+    /**
+     * Does a file name (without path) belong to a file used by this snapshot?
+     * @param name file name to check
+     */
+    public boolean usesFileNamed(String name)
+    {
+        if (iniCache.containsKey(name)) {
+            return true;
+        }
+        for (File file : sourceFiles.values()) {
+            if (file.getName().equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
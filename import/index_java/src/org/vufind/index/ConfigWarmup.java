@@ -0,0 +1,205 @@
+package org.vufind.index;
+/**
+ * Parallel configuration warm-up.
+ *
+ * Copyright (C) Villanova University 2026.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.apache.log4j.Logger;
+import org.solrmarc.tools.PropertyUtils;
+import org.solrmarc.tools.SolrMarcIndexerException;
+
+/**
+ * Parallel configuration warm-up.
+ *
+ * Reads the "custom, ..." specifications in the indexer properties files,
+ * works out which tools (and which configuration they need) will be used, and
+ * loads, parses and compiles that configuration in parallel before the first
+ * record is indexed. Any configuration error stops the indexer immediately.
+ */
+public class ConfigWarmup
+{
+    // Initialize logging category
+    static Logger logger = Logger.getLogger(ConfigWarmup.class.getName());
+
+    // Matches custom(optional.class.Name), methodName(optional arguments)
+    private static final Pattern CUSTOM_SPEC =
+        Pattern.compile("custom(?:\\(([\\w.]+)\\))?\\s*,\\s*(\\w+)(?:\\(([^)]*)\\))?");
+
+    // CreatorTools methods whose third argument is a relator configuration:
+    private static final Set<String> RELATOR_METHODS = new LinkedHashSet<>(Arrays.asList(
+        "getAuthorsFilteredByRelator", "getAuthorInitialsFilteredByRelator",
+        "getRelatorsFilteredByRelator", "getFirstAuthorFilteredByRelator"
+    ));
+
+    private final Set<String> relatorConfigs = new LinkedHashSet<>();
+    private boolean creatorTools = false;
+    private boolean fullTextTools = false;
+    private boolean updateDateTools = false;
+
+    /**
+     * Does a tool class declare a public method with the given name?
+     * @param tool   tool class
+     * @param method method name
+     */
+    private static boolean hasMethod(Class<?> tool, String method)
+    {
+        return Arrays.stream(tool.getMethods()).anyMatch(m -> m.getName().equals(method));
+    }
+
+    /**
+     * Does a specification refer to a tool class?
+     * @param tool      tool class
+     * @param className class name given in the specification (null if none)
+     * @param method    method name given in the specification
+     */
+    private static boolean uses(Class<?> tool, String className, String method)
+    {
+        if (className != null && !className.equals(tool.getName()) && !className.equals(tool.getSimpleName())) {
+            return false;
+        }
+        return hasMethod(tool, method);
+    }
+
+    /**
+     * Record the requirements of every custom specification in a properties file.
+     * @param properties indexer properties
+     */
+    public void addSpecifications(Properties properties)
+    {
+        for (String name : properties.stringPropertyNames()) {
+            Matcher matcher = CUSTOM_SPEC.matcher(properties.getProperty(name));
+            while (matcher.find()) {
+                String className = matcher.group(1);
+                String method = matcher.group(2);
+                String[] args = matcher.group(3) == null ? new String[0] : matcher.group(3).split(",");
+                if (uses(CreatorTools.class, className, method)) {
+                    creatorTools = true;
+                    if (RELATOR_METHODS.contains(method) && args.length > 2) {
+                        relatorConfigs.add(args[2].trim());
+                    }
+                } else if (uses(FullTextTools.class, className, method)) {
+                    fullTextTools = true;
+                } else if (uses(UpdateDateTools.class, className, method)) {
+                    updateDateTools = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Build the list of warm-up tasks for the recorded requirements.
+     */
+    private List<Callable<Object>> getTasks()
+    {
+        List<Callable<Object>> tasks = new ArrayList<>();
+        if (creatorTools) {
+            tasks.add(() -> RelatorContainer.instance().getRelatorPrefixesToStrip());
+            tasks.add(() -> PunctuationContainer.instance().getPunctuationRegEx());
+            tasks.add(() -> PunctuationContainer.instance().getPunctuationPairs());
+            tasks.add(() -> PunctuationContainer.instance().getUntrimmedAbbreviations());
+            tasks.add(() -> new CreatorTools().isUnknownRelator(""));
+            for (String relatorConfig : relatorConfigs) {
+                tasks.add(() -> new CreatorTools().getPermittedRoles(relatorConfig));
+            }
+        }
+        if (fullTextTools) {
+            tasks.add(() -> new FullTextTools().getFulltextParserSettings());
+        }
+        if (updateDateTools) {
+            tasks.add(() -> ConfigManager.instance().getResolvedConfig("config.ini"));
+        }
+        return tasks;
+    }
+
+    /**
+     * Run all warm-up tasks in parallel and wait for them to finish.
+     */
+    public void run()
+    {
+        // Run every task in the namespace being warmed up:
+        ConfigNamespace namespace = ConfigNamespace.current();
+        List<Callable<Object>> tasks = new ArrayList<>();
+        for (Callable<Object> task : getTasks()) {
+            tasks.add(() -> namespace.call(task));
+        }
+        if (tasks.isEmpty()) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        int threads = Math.min(tasks.size(), Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (Future<Object> result : executor.invokeAll(tasks)) {
+                result.get();
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SolrMarcIndexerException) {
+                throw (SolrMarcIndexerException)cause;
+            }
+            dieWithError("Configuration warm-up failed: " + cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+        }
+        logger.info("Warmed up " + tasks.size() + " configuration items in "
+            + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    /**
+     * Warm up the configuration used by a list of indexer properties files.
+     * @param specFiles properties file names (found in SolrMarc's home directories)
+     */
+    public static void warmUp(List<String> specFiles)
+    {
+        ConfigWarmup warmup = new ConfigWarmup();
+        for (String specFile : specFiles) {
+            try {
+                warmup.addSpecifications(
+                    PropertyUtils.loadProperties(ConfigNamespace.current().getImportDirs(), specFile)
+                );
+            } catch (IllegalArgumentException e) {
+                logger.warn("Unable to read " + specFile + " for configuration warm-up");
+            }
+        }
+        warmup.run();
+    }
+
+    /**
+     * Log an error message and throw a fatal exception.
+     * @param msg message to log
+     */
+    private void dieWithError(String msg)
+    {
+        logger.error(msg);
+        throw new SolrMarcIndexerException(SolrMarcIndexerException.EXIT, msg);
+    }
+}
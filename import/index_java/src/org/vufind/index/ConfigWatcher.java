@@ -0,0 +1,140 @@
+package org.vufind.index;
+/**
+ * Configuration file watcher.
+ *
+ * Copyright (C) Villanova University 2026.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import org.apache.log4j.Logger;
+
+/**
+ * Configuration file watcher.
+ *
+ * Watches the directories containing every file merged into the current
+ * configuration snapshot (including parent and local override files) and asks
+ * the ConfigManager to rebuild the snapshot when one of them changes. The
+ * rebuild happens on this thread, so indexer threads never wait for it.
+ */
+public class ConfigWatcher extends Thread
+{
+    // Initialize logging category
+    static Logger logger = Logger.getLogger(ConfigWatcher.class.getName());
+
+    // How long to wait for further changes before rebuilding (editors often
+    // write a file in several steps):
+    private static final long QUIET_PERIOD_MILLIS = 500;
+
+    private final ConfigManager manager;
+    private final WatchService watchService;
+    private final Set<Path> watchedDirectories = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Constructor
+     * @param manager configuration manager to reload
+     */
+    public ConfigWatcher(ConfigManager manager) throws IOException
+    {
+        super("vufind-config-watcher");
+        setDaemon(true);
+        this.manager = manager;
+        watchService = FileSystems.getDefault().newWatchService();
+    }
+
+    /**
+     * Start watching all files merged into a resolved configuration.
+     * @param config resolved configuration
+     */
+    public void watch(ResolvedConfig config)
+    {
+        for (File file : config.getSourceFiles()) {
+            File directory = file.getAbsoluteFile().getParentFile();
+            if (directory != null) {
+                watchDirectory(directory.toPath());
+            }
+        }
+    }
+
+    /**
+     * Start watching a directory (if it is not already watched).
+     * @param directory directory to watch
+     */
+    public void watchDirectory(Path directory)
+    {
+        if (!watchedDirectories.add(directory)) {
+            return;
+        }
+        try {
+            directory.register(
+                watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE
+            );
+        } catch (IOException e) {
+            watchedDirectories.remove(directory);
+            logger.warn("Unable to watch " + directory + " for configuration changes (" + e.getMessage() + ")");
+        }
+    }
+
+    /**
+     * Process the pending events of a watch key.
+     * @param key watch key to process
+     * @return true if any event concerns a configuration file in use
+     */
+    private boolean processEvents(WatchKey key)
+    {
+        boolean relevant = false;
+        ConfigSnapshot snapshot = manager.getSnapshot();
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                relevant = true;
+            } else if (snapshot.usesFileNamed(((Path)event.context()).getFileName().toString())) {
+                relevant = true;
+            }
+        }
+        if (!key.reset()) {
+            watchedDirectories.remove((Path)key.watchable());
+        }
+        return relevant;
+    }
+
+    public void run()
+    {
+        try {
+            while (!isInterrupted()) {
+                boolean relevant = processEvents(watchService.take());
+                WatchKey key;
+                while ((key = watchService.poll(QUIET_PERIOD_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+                    relevant = processEvents(key) || relevant;
+                }
+                if (relevant) {
+                    manager.reloadConfiguration();
+                }
+            }
+        } catch (InterruptedException e) {
+            // Time to stop watching.
+        }
+    }
+}
@@ -0,0 +1,561 @@
+package org.vufind.index;
+/**
+ * Bounded JDBC connection pool.
+ *
+ * Copyright (C) Villanova University 2026.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.ObjectName;
+import org.apache.log4j.Logger;
+
+/**
+ * Bounded JDBC connection pool.
+ *
+ * At most maxSize connections are open at once; a lease waits up to maxWait
+ * milliseconds for a connection to be returned. Leased connections are proxies
+ * whose close() method hands the physical connection back to the pool, so
+ * callers simply use try-with-resources. Connections that have been idle for
+ * longer than the validation interval are checked before being leased again.
+ *
+ * Each physical connection also keeps a small LRU cache of prepared statements
+ * (forward-only, read-only ones: the JDBC defaults). Closing a cached statement
+ * only clears its parameters, so preparing the same SQL again on a later lease
+ * of the same connection reuses the statement without another prepare round trip.
+ */
+public class ConnectionPool implements ConnectionPoolMBean
+{
+    // Initialize logging category
+    static Logger logger = Logger.getLogger(ConnectionPool.class.getName());
+
+    public static final String OBJECT_NAME = "org.vufind.index:type=ConnectionPool";
+
+    // Seconds to wait for a validation query:
+    private static final int VALIDATION_TIMEOUT_SECONDS = 5;
+
+    /**
+     * Opens new physical connections.
+     */
+    public interface ConnectionFactory
+    {
+        Connection connect() throws SQLException;
+    }
+
+    /**
+     * Cached prepared statement.
+     */
+    private static class CachedStatement
+    {
+        final PreparedStatement statement;
+        boolean inUse = false;
+        boolean evicted = false;
+
+        CachedStatement(PreparedStatement statement)
+        {
+            this.statement = statement;
+        }
+    }
+
+    /**
+     * Physical connection with its statement cache. Only the thread leasing the
+     * connection touches the cache.
+     */
+    private class PooledConnection
+    {
+        final Connection connection;
+        final Map<String, CachedStatement> statements;
+        long idleSince;
+
+        PooledConnection(Connection connection)
+        {
+            this.connection = connection;
+            this.statements = new LinkedHashMap<String, CachedStatement>(16, 0.75f, true)
+            {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest)
+                {
+                    if (size() <= statementCacheSize) {
+                        return false;
+                    }
+                    evict(eldest.getValue());
+                    return true;
+                }
+            };
+        }
+
+        /**
+         * Prepare a statement, reusing a cached one if possible.
+         * @param sql SQL to prepare
+         */
+        PreparedStatement prepareStatement(String sql) throws SQLException
+        {
+            CachedStatement cached = statements.get(sql);
+            if (cached != null && !cached.inUse && !cached.statement.isClosed()) {
+                statementHits.increment();
+            } else if (cached != null && cached.inUse) {
+                // Same SQL prepared twice in one lease; don't share the statement:
+                statementMisses.increment();
+                return connection.prepareStatement(sql);
+            } else {
+                statementMisses.increment();
+                cached = new CachedStatement(connection.prepareStatement(sql));
+                statements.put(sql, cached);
+            }
+            cached.inUse = true;
+            return wrapStatement(cached);
+        }
+    }
+
+    private final ConnectionFactory factory;
+    private final int maxSize;
+    private final long maxWaitMillis;
+    private final long validateAfterNanos;
+    private final int statementCacheSize;
+    private final Semaphore permits;
+    private final ConcurrentLinkedDeque<PooledConnection> idle = new ConcurrentLinkedDeque<>();
+    private volatile boolean shuttingDown = false;
+
+    // Statistics:
+    private final AtomicInteger active = new AtomicInteger();
+    private final LongAdder created = new LongAdder();
+    private final LongAdder leases = new LongAdder();
+    private final LongAdder waits = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final LongAdder validationFailures = new LongAdder();
+    private final LongAdder statementHits = new LongAdder();
+    private final LongAdder statementMisses = new LongAdder();
+
+    /**
+     * Constructor
+     * @param factory            source of new physical connections
+     * @param maxSize            maximum number of open connections
+     * @param maxWaitMillis      how long a lease may wait for a connection
+     * @param validateAfterMillis idle time after which a connection is
+     * validated before being leased again
+     * @param statementCacheSize maximum number of prepared statements cached
+     * per connection (0 to disable caching)
+     */
+    public ConnectionPool(ConnectionFactory factory, int maxSize, long maxWaitMillis, long validateAfterMillis,
+        int statementCacheSize
+    ) {
+        this.factory = factory;
+        this.maxSize = maxSize;
+        this.maxWaitMillis = maxWaitMillis;
+        this.validateAfterNanos = TimeUnit.MILLISECONDS.toNanos(validateAfterMillis);
+        this.statementCacheSize = statementCacheSize;
+        this.permits = new Semaphore(maxSize, true);
+    }
+
+    /**
+     * Lease a connection; close it to return it to the pool.
+     * @throws SQLException if no connection becomes available in time, or a new
+     * connection cannot be opened
+     */
+    public Connection getConnection() throws SQLException
+    {
+        if (shuttingDown) {
+            throw new SQLException("Connection pool is shut down");
+        }
+        acquirePermit();
+        try {
+            PooledConnection physical = takeIdleConnection();
+            if (physical == null) {
+                physical = new PooledConnection(factory.connect());
+                created.increment();
+            }
+            active.incrementAndGet();
+            leases.increment();
+            return wrap(physical);
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Wait for a free slot in the pool, recording the wait.
+     */
+    private void acquirePermit() throws SQLException
+    {
+        if (permits.tryAcquire()) {
+            return;
+        }
+        waits.increment();
+        long start = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection");
+        }
+        long waited = System.nanoTime() - start;
+        waitNanos.add(waited);
+        maxWaitNanos.accumulateAndGet(waited, Math::max);
+        if (!acquired) {
+            timeouts.increment();
+            throw new SQLTransientConnectionException(
+                "No database connection available after " + maxWaitMillis + " ms (pool size " + maxSize + ")"
+            );
+        }
+    }
+
+    /**
+     * Take the most recently used idle connection that is still usable.
+     * @return connection, or null if there is none
+     */
+    private PooledConnection takeIdleConnection()
+    {
+        PooledConnection candidate;
+        while ((candidate = idle.pollFirst()) != null) {
+            Connection connection = candidate.connection;
+            if (System.nanoTime() - candidate.idleSince < validateAfterNanos) {
+                return candidate;
+            }
+            try {
+                if (connection.isValid(VALIDATION_TIMEOUT_SECONDS)) {
+                    return candidate;
+                }
+            } catch (SQLException e) {
+                // Treat as invalid.
+            }
+            validationFailures.increment();
+            closeQuietly(connection);
+        }
+        return null;
+    }
+
+    /**
+     * Take back a leased connection.
+     * @param physical physical connection
+     */
+    private void release(PooledConnection pooled)
+    {
+        Connection physical = pooled.connection;
+        active.decrementAndGet();
+        try {
+            if (shuttingDown || physical.isClosed()) {
+                closeQuietly(physical);
+                return;
+            }
+            // Do not leak an open transaction into the next lease:
+            if (!physical.getAutoCommit()) {
+                physical.rollback();
+                physical.setAutoCommit(true);
+            }
+            // Statements the caller forgot to close die with the lease:
+            pooled.statements.values().removeIf(cached -> cached.inUse && closeQuietly(cached.statement));
+            pooled.idleSince = System.nanoTime();
+            idle.offerFirst(pooled);
+        } catch (SQLException e) {
+            closeQuietly(physical);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Wrap a physical connection in a proxy that returns it to the pool on close.
+     * @param physical physical connection
+     */
+    private Connection wrap(PooledConnection pooled)
+    {
+        Connection physical = pooled.connection;
+        InvocationHandler handler = new InvocationHandler()
+        {
+            private boolean closed = false;
+
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+            {
+                switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        release(pooled);
+                    }
+                    return null;
+                case "prepareStatement":
+                    if (closed) {
+                        throw new SQLException("Connection has been returned to the pool");
+                    }
+                    if (statementCacheSize > 0 && (args.length == 1 || args.length == 3
+                        && (Integer)args[1] == ResultSet.TYPE_FORWARD_ONLY
+                        && (Integer)args[2] == ResultSet.CONCUR_READ_ONLY)
+                    ) {
+                        return pooled.prepareStatement((String)args[0]);
+                    }
+                    break;
+                case "isClosed":
+                    return closed || physical.isClosed();
+                case "unwrap":
+                case "isWrapperFor":
+                    break;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled " + physical;
+                default:
+                    if (closed) {
+                        throw new SQLException("Connection has been returned to the pool");
+                    }
+                }
+                try {
+                    return method.invoke(physical, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            }
+        };
+        return (Connection)Proxy.newProxyInstance(
+            Connection.class.getClassLoader(), new Class<?>[] { Connection.class }, handler
+        );
+    }
+
+    /**
+     * Remove a statement from its cache, closing it unless it is still in use
+     * (it is then closed when its user closes it).
+     * @param cached cached statement
+     */
+    private static void evict(CachedStatement cached)
+    {
+        cached.evicted = true;
+        if (!cached.inUse) {
+            closeQuietly(cached.statement);
+        }
+    }
+
+    /**
+     * Wrap a cached statement in a proxy whose close() keeps it in the cache.
+     * Pending batches are cleared on close(); a statement whose settings were
+     * changed (fetch size, maximum rows, timeout, ...) is closed instead of
+     * being kept, so the next user gets a fresh one.
+     * @param cached cached statement
+     */
+    private PreparedStatement wrapStatement(CachedStatement cached)
+    {
+        PreparedStatement statement = cached.statement;
+        InvocationHandler handler = new InvocationHandler()
+        {
+            private boolean closed = false;
+            private boolean batched = false;
+            private boolean changed = false;
+
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+            {
+                switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        try {
+                            ResultSet result = statement.getResultSet();
+                            if (result != null) {
+                                result.close();
+                            }
+                            if (batched) {
+                                statement.clearBatch();
+                            }
+                            statement.clearParameters();
+                            cached.inUse = false;
+                            if (cached.evicted || changed) {
+                                closeQuietly(statement);
+                            }
+                        } catch (SQLException e) {
+                            closeQuietly(statement);
+                        }
+                    }
+                    return null;
+                case "addBatch":
+                    batched = true;
+                    break;
+                case "setFetchSize":
+                case "setFetchDirection":
+                case "setMaxRows":
+                case "setLargeMaxRows":
+                case "setMaxFieldSize":
+                case "setQueryTimeout":
+                case "setEscapeProcessing":
+                case "setCursorName":
+                case "setPoolable":
+                case "closeOnCompletion":
+                    changed = true;
+                    break;
+                case "isClosed":
+                    return closed || statement.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Cached " + statement;
+                default:
+                    break;
+                }
+                if (closed) {
+                    throw new SQLException("Statement has been closed");
+                }
+                try {
+                    return method.invoke(statement, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            }
+        };
+        return (PreparedStatement)Proxy.newProxyInstance(
+            PreparedStatement.class.getClassLoader(), new Class<?>[] { PreparedStatement.class }, handler
+        );
+    }
+
+    /**
+     * Close a connection or statement, ignoring errors.
+     * @param resource resource to close
+     * @return true
+     */
+    private static boolean closeQuietly(AutoCloseable resource)
+    {
+        try {
+            resource.close();
+        } catch (Exception e) {
+            // Nothing more we can do.
+        }
+        return true;
+    }
+
+    /**
+     * Register the pool with the platform MBean server.
+     * @param namespace configuration namespace the pool belongs to
+     */
+    public void register(ConfigNamespace namespace)
+    {
+        register(namespace, null);
+    }
+
+    /**
+     * Register the pool with the platform MBean server.
+     * @param namespace configuration namespace the pool belongs to
+     * @param store     name of the database (null for the main VuFind database)
+     */
+    public void register(ConfigNamespace namespace, String store)
+    {
+        try {
+            String name = namespace.isDefault()
+                ? OBJECT_NAME : OBJECT_NAME + ",namespace=" + ObjectName.quote(namespace.getName());
+            if (store != null) {
+                name += ",store=" + store;
+            }
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(name));
+        } catch (Exception e) {
+            logger.warn("Unable to register connection pool over JMX (" + e.getMessage() + ")");
+        }
+    }
+
+    /**
+     * Close all idle connections and stop leasing new ones; leased connections
+     * are closed when they are returned.
+     */
+    public void shutdown()
+    {
+        shuttingDown = true;
+        PooledConnection current;
+        while ((current = idle.pollFirst()) != null) {
+            closeQuietly(current.connection);
+        }
+        logger.info(
+            "Connection pool: " + getLeaseCount() + " leases, " + getCreatedCount() + " connections opened, "
+            + getWaitCount() + " waits (max " + getMaxWaitMillis() + " ms), " + getTimeoutCount() + " timeouts"
+        );
+    }
+
+    public int getMaxSize()
+    {
+        return maxSize;
+    }
+
+    public int getActiveCount()
+    {
+        return active.get();
+    }
+
+    public int getIdleCount()
+    {
+        return idle.size();
+    }
+
+    public long getCreatedCount()
+    {
+        return created.sum();
+    }
+
+    public long getLeaseCount()
+    {
+        return leases.sum();
+    }
+
+    public long getWaitCount()
+    {
+        return waits.sum();
+    }
+
+    public long getTimeoutCount()
+    {
+        return timeouts.sum();
+    }
+
+    public long getTotalWaitMillis()
+    {
+        return TimeUnit.NANOSECONDS.toMillis(waitNanos.sum());
+    }
+
+    public long getMaxWaitMillis()
+    {
+        return TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get());
+    }
+
+    public long getValidationFailureCount()
+    {
+        return validationFailures.sum();
+    }
+
+    public long getStatementCacheHitCount()
+    {
+        return statementHits.sum();
+    }
+
+    public long getStatementCacheMissCount()
+    {
+        return statementMisses.sum();
+    }
+}
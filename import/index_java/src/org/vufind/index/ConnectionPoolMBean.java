@@ -0,0 +1,85 @@
+package org.vufind.index;
+/**
+ * JMX interface of the database connection pool.
+ *
+ * Copyright (C) Villanova University 2026.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+/**
+ * JMX interface of the database connection pool.
+ */
+public interface ConnectionPoolMBean
+{
+    /**
+     * Maximum number of open connections.
+     */
+    int getMaxSize();
+
+    /**
+     * Number of connections currently leased.
+     */
+    int getActiveCount();
+
+    /**
+     * Number of open connections waiting to be leased.
+     */
+    int getIdleCount();
+
+    /**
+     * Number of connections opened so far.
+     */
+    long getCreatedCount();
+
+    /**
+     * Number of leases so far.
+     */
+    long getLeaseCount();
+
+    /**
+     * Number of leases that had to wait for a connection to be returned.
+     */
+    long getWaitCount();
+
+    /**
+     * Number of leases that gave up waiting.
+     */
+    long getTimeoutCount();
+
+    /**
+     * Total time spent waiting for connections, in milliseconds.
+     */
+    long getTotalWaitMillis();
+
+    /**
+     * Longest wait for a connection, in milliseconds.
+     */
+    long getMaxWaitMillis();
+
+    /**
+     * Number of idle connections discarded because validation failed.
+     */
+    long getValidationFailureCount();
+
+    /**
+     * Number of prepared statements reused from a connection's cache.
+     */
+    long getStatementCacheHitCount();
+
+    /**
+     * Number of statements that had to be prepared.
+     */
+    long getStatementCacheMissCount();
+}
@@ -26,6 +26,7 @@ import org.solrmarc.index.SolrIndexer;
 import org.apache.log4j.Logger;
 import java.util.Arrays;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
@@ -33,7 +34,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.regex.Pattern;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Indexing routines for dealing with creators and relator terms.
@@ -43,12 +43,15 @@ public class CreatorTools
     // Initialize logging category
     static Logger logger = Logger.getLogger(CreatorTools.class.getName());
 
-    private ConcurrentHashMap<String, String> relatorSynonymLookup = RelatorContainer.instance().getSynonymLookup();
-    private Set<String> knownRelators = RelatorContainer.instance().getKnownRelators();
-    private Set<String> relatorPrefixesToStrip = RelatorContainer.instance().getRelatorPrefixesToStrip();
-    private Set<Pattern> punctuationRegEx = PunctuationContainer.instance().getPunctuationRegEx();
-    private Set<String> punctuationPairs = PunctuationContainer.instance().getPunctuationPairs();
-    private Set<String> untrimmedAbbreviations = PunctuationContainer.instance().getUntrimmedAbbreviations();
+    private static String configFilename = "author-classification.ini";
+
+    /**
+     * Constructor (starts the configuration warm-up, if configured)
+     */
+    public CreatorTools()
+    {
+        ConfigManager.startWarmUp();
+    }
 
     /**
      * Extract all valid relator terms from a list of subfields using a whitelist.
@@ -78,16 +81,7 @@ public class CreatorTools
      */
     public Boolean isUnknownRelator(String current)
     {
-        // If we haven't loaded known relators yet, do so now:
-        if (knownRelators.size() == 0) {
-            Map<String, String> all = ConfigManager.instance().getConfigSection("author-classification.ini", "RelatorSynonyms");
-            for (String key : all.keySet()) {
-                knownRelators.add(normalizeRelatorString(key));
-                for (String synonym: all.get(key).split("\\|")) {
-                    knownRelators.add(normalizeRelatorString(synonym));
-                }
-            }
-        }
+        Set<String> knownRelators = RelatorContainer.instance().getKnownRelators();
         return !knownRelators.contains(normalizeRelatorString(current));
     }
 
@@ -141,7 +135,7 @@ public class CreatorTools
             }
         } else {
             // If we got this far, we need to figure out what type of relation they have
-            List<String> permittedRoles = normalizeRelatorStringList(Arrays.asList(loadRelatorConfig(relatorConfig)));
+            List<String> permittedRoles = getPermittedRoles(relatorConfig);
             relators.addAll(getValidRelatorsFromSubfields(subfieldE, permittedRoles, indexRawRelators.toLowerCase().equals("true")));
             relators.addAll(getValidRelatorsFromSubfields(subfield4, permittedRoles, indexRawRelators.toLowerCase().equals("true")));
             if (Arrays.asList(unknownRelatorAllowed).contains(tag)) {
@@ -165,7 +159,7 @@ public class CreatorTools
     protected String fixTrailingPunctuation(String name)
     {
         // First, apply regular expressions:
-        for (Pattern regex : punctuationRegEx) {
+        for (Pattern regex : PunctuationContainer.instance().getPunctuationRegEx()) {
             name = regex.matcher(name).replaceAll("");
         }
 
@@ -174,14 +168,14 @@ public class CreatorTools
         if (name.endsWith(".") && nameLength > 3 && !name.substring(nameLength - 3, nameLength - 2).startsWith(" ")) {
             int p = name.lastIndexOf(" ");
             String lastWord = (p > 0) ? name.substring(p + 1) : name;
-            if (!untrimmedAbbreviations.contains(lastWord.toLowerCase())) {
+            if (!PunctuationContainer.instance().getUntrimmedAbbreviations().contains(lastWord.toLowerCase())) {
                 name = name.substring(0, nameLength - 1);
                 nameLength--;
             }
         }
 
         // Remove trailing close characters with no corresponding open characters:
-        for (String pair : punctuationPairs) {
+        for (String pair : PunctuationContainer.instance().getPunctuationPairs()) {
             String left = pair.substring(0, 1);
             String right = pair.substring(1);
             if (name.endsWith(right) && !name.contains(left)) {
@@ -322,6 +316,7 @@ public class CreatorTools
      */
     public String mapRelatorStringToCode(String relator)
     {
+        Map<String, String> relatorSynonymLookup = RelatorContainer.instance().getSynonymLookup();
         String normalizedRelator = normalizeRelatorString(relator);
         return relatorSynonymLookup.containsKey(normalizedRelator)
             ? relatorSynonymLookup.get(normalizedRelator) : relator;
@@ -522,7 +517,20 @@ public class CreatorTools
      * @return String[]
      */
     protected String[] loadRelatorConfig(String setting){
-        StringBuilder relators = new StringBuilder();
+        List<String> relators = parseRelatorConfig(ConfigManager.instance(), setting);
+        return relators.toArray(new String[relators.size()]);
+    }
+
+    /**
+     * Get the relators of a relator setting (see loadRelatorConfig).
+     *
+     * @param manager Configuration manager to read from
+     * @param setting Setting to load from .ini or colon-delimited list.
+     * @return List of relators
+     */
+    private static List<String> parseRelatorConfig(ConfigManager manager, String setting)
+    {
+        List<String> relators = new ArrayList<String>();
 
         // check for pipe-delimited string
         String[] relatorSettings = setting.split("\\|");
@@ -530,44 +538,82 @@ public class CreatorTools
             // check for colon-delimited string
             String[] relatorArray = relatorSetting.split(":");
             if (relatorArray.length > 1) {
-                for (int i = 0; i < relatorArray.length; i++) {
-                    relators.append(relatorArray[i]).append(",");
-                }
+                relators.addAll(Arrays.asList(relatorArray));
             } else {
-                relators.append(ConfigManager.instance().getConfigSetting(
-                    "author-classification.ini", "AuthorRoles", relatorSetting
-                )).append(",");
+                relators.addAll(manager.getConfigSetting(ConfigKey.ofList(
+                    configFilename, "AuthorRoles", relatorSetting, ","
+                )));
             }
         }
+        return relators;
+    }
 
-        return relators.toString().split(",");
+    /**
+     * Get the normalized list of permitted roles for a relator configuration.
+     * The list is built once and shared until the relator configuration changes.
+     *
+     * @param relatorConfig Setting to load from .ini or colon-delimited list.
+     * @return Unmodifiable list of normalized roles (with synonyms)
+     */
+    protected List<String> getPermittedRoles(String relatorConfig)
+    {
+        ConfigManager manager = ConfigManager.instance();
+        return manager.getArtifactRegistry().<List<String>>register(
+            "CreatorTools.permittedRoles." + relatorConfig,
+            () -> buildPermittedRoles(manager, relatorConfig),
+            configFilename, "AuthorRoles", "RelatorSynonyms", "RelatorPrefixesToStrip"
+        ).get();
     }
 
     /**
-     * Normalizes a relator string and returns a list containing the normalized
-     * relator plus any configured synonyms.
+     * Build the normalized list of permitted roles for a relator configuration.
      *
+     * @param manager       Configuration manager to read from
+     * @param relatorConfig Setting to load from .ini or colon-delimited list.
+     * @return Unmodifiable list of normalized roles (with synonyms)
+     */
+    private static List<String> buildPermittedRoles(ConfigManager manager, String relatorConfig)
+    {
+        List<String> roles = new ArrayList<String>();
+        for (String relator : parseRelatorConfig(manager, relatorConfig)) {
+            roles.addAll(normalizeWithSynonyms(manager, relator));
+        }
+        return Collections.unmodifiableList(roles);
+    }
+
+    /**
+     * Get a normalized relator followed by its normalized synonyms.
+     *
+     * @param manager Configuration manager to read from
      * @param relator Relator term to normalize
      * @return List of strings
      */
-    public List<String> normalizeRelatorAndAddSynonyms(String relator)
+    private static List<String> normalizeWithSynonyms(ConfigManager manager, String relator)
     {
+        RelatorContainer container = RelatorContainer.instance(manager);
         List<String> newList = new ArrayList<String>();
-        String normalized = normalizeRelatorString(relator);
-        newList.add(normalized);
-        String synonyms = ConfigManager.instance().getConfigSetting(
-            "author-classification.ini", "RelatorSynonyms", relator
-        );
-        if (null != synonyms && synonyms.length() > 0) {
-            for (String synonym: synonyms.split("\\|")) {
-                String normalizedSynonym = normalizeRelatorString(synonym);
-                relatorSynonymLookup.put(normalizedSynonym, relator);
-                newList.add(normalizedSynonym);
-            }
+        newList.add(container.normalize(relator));
+        List<String> synonyms = manager.getConfigSetting(ConfigKey.ofList(
+            configFilename, "RelatorSynonyms", relator, "|"
+        ));
+        for (String synonym: synonyms) {
+            newList.add(container.normalize(synonym));
         }
         return newList;
     }
 
+    /**
+     * Normalizes a relator string and returns a list containing the normalized
+     * relator plus any configured synonyms.
+     *
+     * @param relator Relator term to normalize
+     * @return List of strings
+     */
+    public List<String> normalizeRelatorAndAddSynonyms(String relator)
+    {
+        return normalizeWithSynonyms(ConfigManager.instance(), relator);
+    }
+
     /**
      * Normalizes the strings in a list.
      *
@@ -591,16 +637,7 @@ public class CreatorTools
      */
     protected String normalizeRelatorString(String string)
     {
-        string = string.trim();
-        for (String prefix : relatorPrefixesToStrip) {
-            if (string.startsWith(prefix)) {
-                string = string.substring(prefix.length());
-                break;
-            }
-        }
-        return string
-            .toLowerCase()
-            .replaceAll("\\p{Punct}+", "");    //POSIX character class Punctuation: One of !"#$%&'()*+,-./:;<=>?@[\]^_`{|}~
+        return RelatorContainer.instance().normalize(string);
     }
 
     /**
@@ -21,6 +21,17 @@ package org.vufind.index;
 import org.apache.log4j.Logger;
 import org.solrmarc.tools.SolrMarcIndexerException;
 import java.sql.*;
+import java.util.Map;
+import java.util.AbstractMap;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.io.File;
+import java.io.IOException;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Paths;
@@ -28,31 +39,122 @@ import java.nio.file.Path;
 
 /**
  * Database manager.
+ *
+ * One manager (and one bounded connection pool) is shared by all indexer
+ * threads of a configuration namespace. Connections returned by
+ * getConnection() are leased from the pool and must be closed after use.
+ *
+ * The change tracker may be kept in the main VuFind database (the default) or,
+ * with vufind.change_tracker.store = embedded, in an embedded H2 database under
+ * the local directory; ChangeTrackerSync copies it to and from the main
+ * database. getTrackerConnection() returns a connection to whichever is used.
+ *
+ * Change tracker lookups may be sent to a read-only replica of the VuFind
+ * database (replica_database in the [Database] section of config.ini) with
+ * getTrackerReadConnection(); rows written less than replica_max_lag seconds
+ * ago are still read from the primary database, so a record indexed twice in
+ * one run sees its own update.
  */
 public class DatabaseManager
 {
     // Initialize logging category
     static Logger logger = Logger.getLogger(DatabaseManager.class.getName());
 
-    // Initialize VuFind database connection (null until explicitly activated)
-    private Connection vufindDatabase = null;
+    // Initialize VuFind database connection pool (null until explicitly activated)
+    private volatile ConnectionPool pool = null;
+
+    // Platform of the VuFind database ("mysql" or "postgresql", once connected):
+    private volatile String platform = null;
+
+    // Platform to use native upserts for (see getTrackerUpsertPlatform()):
+    private volatile String upsertPlatform = null;
+    private volatile boolean upsertChecked = false;
+
+    // Read-only replica pool for change tracker lookups (null unless configured):
+    private volatile ConnectionPool replicaPool = null;
+    private volatile boolean replicaChecked = false;
+    private long replicaMaxLagNanos = 0;
+
+    // Change tracker rows written recently (core/id -> System.nanoTime() of the
+    // write), in write order for expiry; they are read from the primary until
+    // the replica has had time to catch up:
+    private final Map<String, Long> recentWrites = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Map.Entry<String, Long>> recentWriteOrder = new ConcurrentLinkedQueue<>();
+
+    // Preloaded change tracker rows, by core (see vufind.change_tracker.preload):
+    private final Map<String, ChangeTrackerPreload> preloads = new ConcurrentHashMap<>();
+    private volatile Set<String> preloadCores = null;
+
+    // Bloom filters of change tracker ids, by core (see vufind.change_tracker.id_filter):
+    private final Map<String, ChangeTrackerIdFilter> idFilters = new ConcurrentHashMap<>();
+    private volatile Set<String> idFilterCores = null;
+
+    // Embedded change tracker database pool (null unless activated):
+    private volatile ConnectionPool embeddedPool = null;
+    private boolean shutdownHookAdded = false;
+
+    // Write-behind queue for change tracker updates (null until first used):
+    private volatile ChangeTrackerWriter trackerWriter = null;
+    private boolean trackerWriterChecked = false;
+
+    // Local journal for change tracker updates (null unless configured):
+    private volatile ChangeTrackerJournal trackerJournal = null;
+    private boolean trackerJournalChecked = false;
+
+    // Schema of the embedded change tracker database:
+    private static final String[] EMBEDDED_SCHEMA = {
+        "CREATE TABLE IF NOT EXISTS change_tracker ("
+        + "core VARCHAR(30) NOT NULL, id VARCHAR(120) NOT NULL, first_indexed TIMESTAMP, "
+        + "last_indexed TIMESTAMP, last_record_change TIMESTAMP, deleted TIMESTAMP, "
+        + "PRIMARY KEY (core, id))",
+        "CREATE INDEX IF NOT EXISTS change_tracker_last_indexed_idx ON change_tracker(last_indexed)",
+        "CREATE TABLE IF NOT EXISTS change_tracker_sync ("
+        + "direction VARCHAR(10) NOT NULL PRIMARY KEY, synced TIMESTAMP NOT NULL)",
+    };
+
+    // Statement and connection lease timings:
+    private final DatabaseStatistics statistics = new DatabaseStatistics();
 
     // Shutdown flag:
-    private boolean shuttingDown = false;
+    private volatile boolean shuttingDown = false;
 
-    private static ThreadLocal<DatabaseManager> managerCache =
-        new ThreadLocal<DatabaseManager>()
-        {
-            @Override
-            protected DatabaseManager initialValue()
-            {
-                return new DatabaseManager();
-            }
-        };
+    // Typed config.ini settings:
+    private static final ConfigKey<Boolean> USE_SSL =
+        ConfigKey.ofBoolean("config.ini", "Database", "use_ssl", false);
+    private static final ConfigKey<Boolean> VERIFY_SERVER_CERTIFICATE =
+        ConfigKey.ofBoolean("config.ini", "Database", "verify_server_certificate", false);
+    private static final ConfigKey<Integer> REPLICA_MAX_LAG =
+        ConfigKey.ofInteger("config.ini", "Database", "replica_max_lag", 60);
+
+    // Configuration of the namespace this manager connects for:
+    private final ConfigManager configManager;
+
+    // One manager per configuration namespace:
+    private static final Map<ConfigNamespace, DatabaseManager> managerCache = new ConcurrentHashMap<>();
+
+    public DatabaseManager()
+    {
+        this(ConfigManager.instance());
+    }
 
+    /**
+     * Constructor
+     * @param configManager configuration to read database settings from
+     */
+    public DatabaseManager(ConfigManager configManager)
+    {
+        this.configManager = configManager;
+    }
+
+    /**
+     * Get the manager for the current thread's configuration namespace.
+     */
     public static DatabaseManager instance()
     {
-        return managerCache.get();
+        ConfigManager configManager = ConfigManager.instance();
+        DatabaseManager manager = managerCache.get(configManager.getNamespace());
+        return manager != null
+            ? manager : managerCache.computeIfAbsent(configManager.getNamespace(), k -> new DatabaseManager(configManager));
     }
 
     /**
@@ -66,12 +168,12 @@ public class DatabaseManager
     }
 
     /**
-     * Connect to the VuFind database if we do not already have a connection.
+     * Set up the connection pool if we do not already have one.
      */
-    private void connectToDatabase()
+    private synchronized void connectToDatabase()
     {
         // Already connected?  Do nothing further!
-        if (vufindDatabase != null) {
+        if (pool != null) {
             return;
         }
         try {
@@ -80,7 +182,7 @@ public class DatabaseManager
             logger.warn("Unable to connect to database using split config (" + e.getMessage() + ")");
         }
         // If the split config allowed to setup the DB, do nothing further
-        if (vufindDatabase != null) {
+        if (pool != null) {
             return;
         }
         try {
@@ -95,16 +197,26 @@ public class DatabaseManager
      */
     private void connectToDatabaseUsingStringConfig() throws Throwable
     {
-        String dsn = ConfigManager.instance().getConfigSetting("config.ini", "Database", "database");
+        String dsn = configManager.getConfigSetting("config.ini", "Database", "database");
         if (dsn == null || dsn.isEmpty()) {
             throw new Exception("Cannot find working database settings in config.ini");
         }
+        String[] params = parseDsn(dsn);
+        pool = createPoolUsingParams(params[0], params[1], params[2], params[3], params[4], params[5], null);
+    }
 
+    /**
+     * Parse a PHP-style connection string.
+     * @param dsn connection string ([platform]://[username]:[password]@[host]:[port]/[db])
+     * @return platform, host, port, database name, username and password
+     */
+    private static String[] parseDsn(String dsn)
+    {
         // Parse key settings from the PHP-style DSN:
         String platform = "invalid";
-        if (dsn.substring(0, 8).equals("mysql://")) {
+        if (dsn.length() >= 8 && dsn.substring(0, 8).equals("mysql://")) {
             platform = "mysql";
-        } else if (dsn.substring(0, 8).equals("pgsql://")) {
+        } else if (dsn.length() >= 8 && dsn.substring(0, 8).equals("pgsql://")) {
             platform = "postgresql";
         }
 
@@ -131,7 +243,7 @@ public class DatabaseManager
                 }
             }
         }
-        connectToDatabaseUsingParams(platform, host, port, name, username, password);
+        return new String[] { platform, host, port, name, username, password };
     }
 
     /**
@@ -139,30 +251,31 @@ public class DatabaseManager
      */
     private void connectToDatabaseUsingSplitConfig() throws Throwable
     {
-        String username = ConfigManager.instance().getConfigSetting("config.ini", "Database", "database_username");
+        String username = configManager.getConfigSetting("config.ini", "Database", "database_username");
         String password = "";
-        String passwordFile = ConfigManager.instance().getConfigSetting("config.ini", "Database", "database_password_file");
+        String passwordFile = configManager.getConfigSetting("config.ini", "Database", "database_password_file");
         if (passwordFile != null && !passwordFile.isEmpty()) {
             Path passwordFilePath = Paths.get(passwordFile);
             password = Files.readString(passwordFilePath, Charset.defaultCharset()).trim();
         }
         if (password.isEmpty()) {
-            password = ConfigManager.instance().getConfigSetting("config.ini", "Database", "database_password");
+            password = configManager.getConfigSetting("config.ini", "Database", "database_password");
         }
-        String host = ConfigManager.instance().getConfigSetting("config.ini", "Database", "database_host");
-        String port = ConfigManager.instance().getConfigSetting("config.ini", "Database", "database_port");
-        String name = ConfigManager.instance().getConfigSetting("config.ini", "Database", "database_name");
-        String platform = ConfigManager.instance().getConfigSetting("config.ini", "Database", "database_driver");
+        String host = configManager.getConfigSetting("config.ini", "Database", "database_host");
+        String port = configManager.getConfigSetting("config.ini", "Database", "database_port");
+        String name = configManager.getConfigSetting("config.ini", "Database", "database_name");
+        String platform = configManager.getConfigSetting("config.ini", "Database", "database_driver");
         // If no platform is set, don't bother trying to connect:
         if (platform != null && !platform.isEmpty()) {
-            connectToDatabaseUsingParams(platform, host, port, name, username, password);
+            pool = createPoolUsingParams(platform, host, port, name, username, password, null);
         }
     }
 
     /**
-     * Connect to the VuFind database using provided values
+     * Set up a connection pool for a database using provided values
+     * @param store name of the database for JMX (null for the main VuFind database)
      */
-    private void connectToDatabaseUsingParams(String platform, String host, String port, String name, String username, String password) throws Throwable
+    private ConnectionPool createPoolUsingParams(String platform, String host, String port, String name, String username, String password, String store) throws Throwable
     {
         String classname = "invalid";
         String extraParams = "";
@@ -170,12 +283,16 @@ public class DatabaseManager
         if (platform.equals("mysql")) {
             classname = "com.mysql.jdbc.Driver";
             prefix = "mysql";
-            String useSsl = ConfigManager.instance().getBooleanConfigSetting("config.ini", "Database", "use_ssl", false) ? "true" : "false";
+            boolean useSsl = configManager.getConfigSetting(USE_SSL);
             extraParams = "?useSSL=" + useSsl;
-            if (useSsl != "false") {
-                String verifyCert = ConfigManager.instance().getBooleanConfigSetting("config.ini", "Database", "verify_server_certificate", false) ? "true" : "false";
+            if (useSsl) {
+                boolean verifyCert = configManager.getConfigSetting(VERIFY_SERVER_CERTIFICATE);
                 extraParams += "&verifyServerCertificate=" + verifyCert;
             }
+            // Report the rows an update changed rather than the rows it
+            // matched, so that native upserts can tell inserted (1), updated
+            // (2) and unchanged (0) rows apart:
+            extraParams += "&useAffectedRows=true";
         } else if (platform.equals("pgsql") || platform.equals("postgresql")) {
             classname = "org.postgresql.Driver";
             prefix = "postgresql";
@@ -188,34 +305,513 @@ public class DatabaseManager
         }
         dsn = dsn + "/" + name;
 
-        // Connect to the database:
-        vufindDatabase = DriverManager.getConnection("jdbc:" + dsn + extraParams, username, password);
+        // Set up the pool, and connect once to make sure the settings work:
+        String url = "jdbc:" + dsn + extraParams;
+        ConnectionPool newPool = createPool(() -> DriverManager.getConnection(url, username, password));
+        newPool.getConnection().close();
+        newPool.register(configManager.getNamespace(), store);
+        addShutdownHook();
+        if (store == null) {
+            this.platform = prefix;
+        }
+        return newPool;
+    }
 
-        Runtime.getRuntime().addShutdownHook(new DatabaseManagerShutdownThread(this));
+    /**
+     * Create a connection pool using the vufind.database.pool.* settings.
+     * @param factory source of new connections
+     */
+    private ConnectionPool createPool(ConnectionPool.ConnectionFactory factory)
+    {
+        return new ConnectionPool(
+            factory,
+            Integer.parseInt(configManager.getIndexerProperty("vufind.database.pool.max_size", "10")),
+            Long.parseLong(configManager.getIndexerProperty("vufind.database.pool.max_wait", "30000")),
+            Long.parseLong(configManager.getIndexerProperty("vufind.database.pool.validate_idle", "30000")),
+            Integer.parseInt(configManager.getIndexerProperty("vufind.database.pool.statement_cache_size", "20"))
+        );
     }
 
-    private void disconnectFromDatabase()
+    /**
+     * Publish the statistics over JMX and close all pools when the JVM exits
+     * (done once per manager).
+     */
+    private synchronized void addShutdownHook()
     {
-        if (vufindDatabase != null) {
+        if (!shutdownHookAdded) {
+            statistics.register(configManager.getNamespace());
+            Runtime.getRuntime().addShutdownHook(new DatabaseManagerShutdownThread(this));
+            shutdownHookAdded = true;
+        }
+    }
+
+    /**
+     * Get the statement and connection lease timings.
+     */
+    public DatabaseStatistics getStatistics()
+    {
+        return statistics;
+    }
+
+    /**
+     * Set up the replica pool if config.ini has a replica_database setting and
+     * we have not done so yet.
+     */
+    private synchronized void connectToReplica()
+    {
+        if (replicaChecked) {
+            return;
+        }
+        String dsn = configManager.getConfigSetting("config.ini", "Database", "replica_database");
+        if (dsn != null && !dsn.isEmpty()) {
             try {
-                vufindDatabase.close();
+                String[] params = parseDsn(dsn);
+                replicaMaxLagNanos = TimeUnit.SECONDS.toNanos(configManager.getConfigSetting(REPLICA_MAX_LAG));
+                replicaPool = createPoolUsingParams(
+                    params[0], params[1], params[2], params[3], params[4], params[5], "replica"
+                );
+            } catch (Throwable e) {
+                dieWithError("Unable to connect to VuFind database replica; " + e.getMessage());
+            }
+        }
+        replicaChecked = true;
+    }
+
+    /**
+     * Note that a change tracker row has been written, so that it is read back
+     * from the primary database rather than a replica that may lag behind.
+     * @param core core
+     * @param id   record id
+     */
+    public void recordTrackerWrite(String core, String id)
+    {
+        if (replicaPool == null) {
+            return;
+        }
+        long now = System.nanoTime();
+        String key = core + '\u0000' + id;
+        recentWrites.put(key, now);
+        recentWriteOrder.add(new AbstractMap.SimpleImmutableEntry<>(key, now));
+
+        // Forget writes the replica has caught up with:
+        Map.Entry<String, Long> oldest;
+        while ((oldest = recentWriteOrder.peek()) != null && now - oldest.getValue() > replicaMaxLagNanos) {
+            if (recentWriteOrder.remove(oldest)) {
+                recentWrites.remove(oldest.getKey(), oldest.getValue());
+            }
+        }
+    }
+
+    /**
+     * Lease a connection for reading a change tracker row: from the replica if
+     * one is configured and the row has not been written recently, otherwise
+     * from the database holding the change tracker; close it to return it.
+     * @param core core
+     * @param id   record id
+     */
+    public Connection getTrackerReadConnection(String core, String id) throws SQLException
+    {
+        return getTrackerReadConnection(core, Collections.singleton(id));
+    }
+
+    /**
+     * Lease a connection for reading change tracker rows: from the replica if
+     * one is configured and none of the rows has been written recently,
+     * otherwise from the database holding the change tracker; close it to
+     * return it.
+     * @param core core
+     * @param ids  record ids
+     */
+    public Connection getTrackerReadConnection(String core, Collection<String> ids) throws SQLException
+    {
+        if (isTrackerEmbedded()) {
+            return getEmbeddedConnection();
+        }
+        if (!replicaChecked) {
+            connectToReplica();
+        }
+        if (replicaPool == null) {
+            return getConnection();
+        }
+        if (!recentWrites.isEmpty()) {
+            long now = System.nanoTime();
+            for (String id : ids) {
+                Long written = recentWrites.get(core + '\u0000' + id);
+                if (written != null && now - written <= replicaMaxLagNanos) {
+                    return getConnection();
+                }
+            }
+        }
+        long start = System.nanoTime();
+        Connection connection = replicaPool.getConnection();
+        statistics.record(DatabaseStatistics.Operation.POOL_WAIT, start, 0);
+        return connection;
+    }
+
+    /**
+     * Get the preloaded change tracker rows of a core, loading them on first
+     * use (null unless the core is listed in vufind.change_tracker.preload).
+     * @param core core
+     */
+    public ChangeTrackerPreload getTrackerPreload(String core)
+    {
+        ChangeTrackerPreload preload = preloads.get(core);
+        if (preload != null) {
+            return preload;
+        }
+        if (preloadCores == null) {
+            preloadCores = getCoreList("vufind.change_tracker.preload");
+        }
+        return preloadCores.contains(core) ? loadTrackerPreload(core) : null;
+    }
+
+    /**
+     * Get the cores listed in a comma-separated indexer property.
+     * @param property property name
+     */
+    private Set<String> getCoreList(String property)
+    {
+        Set<String> cores = new HashSet<>();
+        for (String current : configManager.getIndexerProperty(property, "").split(",")) {
+            if (!current.trim().isEmpty()) {
+                cores.add(current.trim());
+            }
+        }
+        return cores;
+    }
+
+    /**
+     * Load the change tracker rows of a core if not already loaded.
+     * @param core core
+     */
+    private synchronized ChangeTrackerPreload loadTrackerPreload(String core)
+    {
+        ChangeTrackerPreload preload = preloads.get(core);
+        if (preload == null) {
+            try (Connection db = getTrackerReadConnection(core, Collections.emptySet())) {
+                preload = ChangeTrackerPreload.load(db, core, statistics);
+            } catch (SQLException | OutOfMemoryError e) {
+                dieWithError("Unable to preload change_tracker rows of core " + core + "; " + e.getMessage());
+            }
+            preloads.put(core, preload);
+        }
+        return preload;
+    }
+
+    /**
+     * Get the Bloom filter of the change tracker ids of a core, loading it on
+     * first use (null unless the core is listed in vufind.change_tracker.id_filter).
+     * @param core core
+     */
+    public ChangeTrackerIdFilter getTrackerIdFilter(String core)
+    {
+        ChangeTrackerIdFilter filter = idFilters.get(core);
+        if (filter != null) {
+            return filter;
+        }
+        if (idFilterCores == null) {
+            idFilterCores = getCoreList("vufind.change_tracker.id_filter");
+        }
+        return idFilterCores.contains(core) ? loadTrackerIdFilter(core) : null;
+    }
+
+    /**
+     * Load the id filter of a core if not already loaded.
+     * @param core core
+     */
+    private synchronized ChangeTrackerIdFilter loadTrackerIdFilter(String core)
+    {
+        ChangeTrackerIdFilter filter = idFilters.get(core);
+        if (filter == null) {
+            try (Connection db = getTrackerReadConnection(core, Collections.emptySet())) {
+                filter = ChangeTrackerIdFilter.load(db, core, statistics);
+            } catch (SQLException | OutOfMemoryError e) {
+                dieWithError("Unable to load change_tracker ids of core " + core + "; " + e.getMessage());
+            }
+            idFilters.put(core, filter);
+        }
+        return filter;
+    }
+
+    /**
+     * Get the platform whose native single-statement upsert should be used for
+     * change tracker writes ("mysql" or "postgresql"), or null to read and then
+     * write. Upserts are used if vufind.change_tracker.upsert is enabled and the
+     * change tracker is in a MySQL or PostgreSQL VuFind database.
+     */
+    public String getTrackerUpsertPlatform()
+    {
+        if (!upsertChecked) {
+            checkTrackerUpsertPlatform();
+        }
+        return upsertPlatform;
+    }
+
+    private synchronized void checkTrackerUpsertPlatform()
+    {
+        if (upsertChecked) {
+            return;
+        }
+        if (Boolean.parseBoolean(configManager.getIndexerProperty("vufind.change_tracker.upsert", "false"))
+            && !isTrackerEmbedded()
+        ) {
+            if (pool == null) {
+                connectToDatabase();
+            }
+            if ("mysql".equals(platform) || "postgresql".equals(platform)) {
+                upsertPlatform = platform;
+            } else {
+                logger.warn("Native upserts are not supported for database platform " + platform);
+            }
+        }
+        upsertChecked = true;
+    }
+
+    /**
+     * Is the change tracker kept in the embedded database?
+     */
+    public boolean isTrackerEmbedded()
+    {
+        return "embedded".equals(configManager.getIndexerProperty("vufind.change_tracker.store", "database"));
+    }
+
+    /**
+     * Get the JDBC URL of the embedded change tracker database.
+     */
+    public String getEmbeddedTrackerUrl()
+    {
+        String url = configManager.getIndexerProperty("vufind.change_tracker.embedded_url", null);
+        if (url == null || url.isEmpty()) {
+            ConfigNamespace namespace = configManager.getNamespace();
+            String vufindLocal = namespace.getVufindLocal();
+            if (vufindLocal == null || vufindLocal.isEmpty()) {
+                vufindLocal = namespace.getVufindHome() + "/local";
+            }
+            url = "jdbc:h2:file:" + vufindLocal + "/import/change_tracker";
+        }
+        return url;
+    }
+
+    /**
+     * Open the embedded change tracker database (creating its tables if
+     * necessary) if it is not already open.
+     */
+    private synchronized void connectToEmbeddedDatabase()
+    {
+        if (embeddedPool != null) {
+            return;
+        }
+        String url = getEmbeddedTrackerUrl();
+        try {
+            ConnectionPool newPool = createPool(() -> DriverManager.getConnection(url));
+            try (
+                Connection connection = newPool.getConnection();
+                Statement statement = connection.createStatement()
+            ) {
+                for (String sql : EMBEDDED_SCHEMA) {
+                    statement.execute(sql);
+                }
+            }
+            newPool.register(configManager.getNamespace(), "embedded");
+            embeddedPool = newPool;
+            addShutdownHook();
+        } catch (Throwable e) {
+            dieWithError("Unable to open embedded change tracker database " + url + "; " + e.getMessage());
+        }
+    }
+
+    /**
+     * Get the write-behind queue for change tracker updates (null unless
+     * vufind.change_tracker.write_behind is enabled).
+     */
+    public ChangeTrackerWriter getTrackerWriter()
+    {
+        if (trackerWriter == null) {
+            createTrackerWriter();
+        }
+        return trackerWriter;
+    }
+
+    /**
+     * Start the write-behind queue if enabled and not already started.
+     */
+    private synchronized void createTrackerWriter()
+    {
+        if (trackerWriterChecked || shuttingDown) {
+            return;
+        }
+        trackerWriterChecked = true;
+        if (Boolean.parseBoolean(configManager.getIndexerProperty("vufind.change_tracker.write_behind", "false"))) {
+            trackerWriter = new ChangeTrackerWriter(
+                this,
+                Integer.parseInt(configManager.getIndexerProperty("vufind.change_tracker.write_queue_size", "10000")),
+                Integer.parseInt(configManager.getIndexerProperty("vufind.change_tracker.write_batch_size", "500")),
+                Long.parseLong(configManager.getIndexerProperty("vufind.change_tracker.write_interval", "1000"))
+            );
+            addShutdownHook();
+        }
+    }
+
+    /**
+     * Get the path of the change tracker journal (vufind.change_tracker.journal;
+     * empty if the journal is disabled).
+     */
+    public String getTrackerJournalPath()
+    {
+        return configManager.getIndexerProperty("vufind.change_tracker.journal", "").trim();
+    }
+
+    /**
+     * Get the local journal for change tracker updates (null if
+     * vufind.change_tracker.journal is not set).
+     */
+    public ChangeTrackerJournal getTrackerJournal()
+    {
+        if (trackerJournal == null) {
+            openTrackerJournal();
+        }
+        return trackerJournal;
+    }
+
+    /**
+     * Get the destination for change tracker updates that are not written
+     * immediately: the journal if configured, otherwise the write-behind queue
+     * (null if neither is enabled).
+     */
+    public ChangeTrackerSink getTrackerSink()
+    {
+        ChangeTrackerJournal journal = getTrackerJournal();
+        return journal != null ? journal : getTrackerWriter();
+    }
+
+    /**
+     * Open the journal if configured and not already open, first applying any
+     * entries left in it by an interrupted run.
+     */
+    private synchronized void openTrackerJournal()
+    {
+        if (trackerJournalChecked || shuttingDown) {
+            return;
+        }
+        trackerJournalChecked = true;
+        String path = getTrackerJournalPath();
+        if (path.isEmpty()) {
+            return;
+        }
+        File file = new File(path);
+        try {
+            if (file.length() > 0) {
+                logger.info("Applying change tracker journal " + path + " left by an interrupted run");
+                ChangeTrackerJournal.apply(file, this);
+            }
+            trackerJournal = new ChangeTrackerJournal(file);
+        } catch (IOException | SQLException e) {
+            dieWithError("Unable to open change tracker journal " + path + "; " + e.getMessage());
+        }
+        addShutdownHook();
+    }
+
+    /**
+     * Close the journal and apply it to the change_tracker table (before the
+     * pools are closed). If that fails, the file is kept for the next run.
+     */
+    private synchronized void applyTrackerJournal()
+    {
+        trackerJournalChecked = true;
+        if (trackerJournal != null) {
+            File file = trackerJournal.getFile();
+            try {
+                trackerJournal.close();
+                ChangeTrackerJournal.apply(file, this);
+                Files.delete(file.toPath());
+            } catch (IOException | SQLException e) {
+                logger.error(
+                    "Unable to apply change tracker journal " + file + " (the next run will retry): " + e.getMessage()
+                );
+            }
+            trackerJournal = null;
+        }
+    }
+
+    /**
+     * Write all queued change tracker updates (before the pools are closed).
+     */
+    private synchronized void flushTrackerWriter()
+    {
+        trackerWriterChecked = true;
+        if (trackerWriter != null) {
+            try {
+                trackerWriter.close();
             } catch (SQLException e) {
-                System.err.println("Unable to disconnect from VuFind database");
-                logger.error("Unable to disconnect from VuFind database");
+                logger.error("Change tracker updates were lost: " + e.getMessage());
             }
         }
     }
 
+    private void disconnectFromDatabase()
+    {
+        if (pool != null) {
+            pool.shutdown();
+        }
+        if (replicaPool != null) {
+            replicaPool.shutdown();
+        }
+        if (embeddedPool != null) {
+            embeddedPool.shutdown();
+        }
+    }
+
     public void shutdown()
     {
-        disconnectFromDatabase();
         shuttingDown = true;
+        flushTrackerWriter();
+        applyTrackerJournal();
+        disconnectFromDatabase();
+        if (shutdownHookAdded) {
+            logger.info(statistics.getSummary());
+        }
     }
 
-    public Connection getConnection()
+    /**
+     * Lease a database connection from the pool; close it to return it.
+     */
+    public Connection getConnection() throws SQLException
+    {
+        if (pool == null) {
+            connectToDatabase();
+        }
+        long start = System.nanoTime();
+        Connection connection = pool.getConnection();
+        statistics.record(DatabaseStatistics.Operation.POOL_WAIT, start, 0);
+        return connection;
+    }
+
+    /**
+     * Lease a connection to the database holding the change tracker (the
+     * embedded database if enabled, otherwise the main database); close it to
+     * return it.
+     */
+    public Connection getTrackerConnection() throws SQLException
     {
-        connectToDatabase();
-        return vufindDatabase;
+        if (!isTrackerEmbedded()) {
+            return getConnection();
+        }
+        return getEmbeddedConnection();
+    }
+
+    /**
+     * Lease a connection to the embedded change tracker database; close it to
+     * return it.
+     */
+    public Connection getEmbeddedConnection() throws SQLException
+    {
+        if (embeddedPool == null) {
+            connectToEmbeddedDatabase();
+        }
+        long start = System.nanoTime();
+        Connection connection = embeddedPool.getConnection();
+        statistics.record(DatabaseStatistics.Operation.POOL_WAIT, start, 0);
+        return connection;
     }
 
     public boolean isShuttingDown()
@@ -0,0 +1,272 @@
+package org.vufind.index;
+/**
+ * Database statement statistics.
+ *
+ * Copyright (C) Villanova University 2026.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.ObjectName;
+import org.apache.log4j.Logger;
+
+/**
+ * Database statement statistics.
+ *
+ * Keeps a latency histogram per statement type (select, insert, update,
+ * upsert) and for connection leases (time spent waiting for the pool), plus the
+ * number of rows each statement type returned or changed. Recording is lock-free. The
+ * statistics are published over JMX and logged as a table when the database
+ * manager shuts down, showing at a glance whether an import is waiting on the
+ * database.
+ */
+public class DatabaseStatistics implements DatabaseStatisticsMBean
+{
+    // Initialize logging category
+    static Logger logger = Logger.getLogger(DatabaseStatistics.class.getName());
+
+    public static final String OBJECT_NAME = "org.vufind.index:type=DatabaseStatistics";
+
+    /**
+     * Timed operations.
+     */
+    public enum Operation
+    {
+        SELECT, INSERT, UPDATE, UPSERT, POOL_WAIT
+    }
+
+    /**
+     * Latency histogram with power-of-two microsecond buckets: bucket i counts
+     * latencies below 2^i microseconds (and at least 2^(i-1)).
+     */
+    static class Histogram
+    {
+        static final int BUCKETS = 32;
+
+        final LongAdder[] buckets = new LongAdder[BUCKETS];
+        final LongAdder count = new LongAdder();
+        final LongAdder nanos = new LongAdder();
+        final LongAdder rows = new LongAdder();
+        final AtomicLong maxNanos = new AtomicLong();
+
+        Histogram()
+        {
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        void record(long elapsed, long affected)
+        {
+            long micros = TimeUnit.NANOSECONDS.toMicros(elapsed);
+            int bucket = Math.min(64 - Long.numberOfLeadingZeros(micros), BUCKETS - 1);
+            buckets[bucket].increment();
+            count.increment();
+            nanos.add(elapsed);
+            rows.add(affected);
+            if (elapsed > maxNanos.get()) {
+                maxNanos.accumulateAndGet(elapsed, Math::max);
+            }
+        }
+
+        long meanMicros()
+        {
+            long total = count.sum();
+            return total == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(nanos.sum()) / total;
+        }
+
+        /**
+         * Get the upper bound of the bucket holding a percentile (capped at the
+         * maximum latency seen).
+         * @param percentile percentile (0-100)
+         */
+        long percentileMicros(double percentile)
+        {
+            long[] counts = new long[BUCKETS];
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = buckets[i].sum();
+                total += counts[i];
+            }
+            long threshold = (long)Math.ceil(total * percentile / 100);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts[i];
+                if (seen >= threshold && seen > 0) {
+                    return Math.min(1L << i, TimeUnit.NANOSECONDS.toMicros(maxNanos.get()));
+                }
+            }
+            return 0;
+        }
+
+        void reset()
+        {
+            for (LongAdder bucket : buckets) {
+                bucket.reset();
+            }
+            count.reset();
+            nanos.reset();
+            rows.reset();
+            maxNanos.set(0);
+        }
+    }
+
+    private final Map<Operation, Histogram> histograms = new EnumMap<>(Operation.class);
+
+    public DatabaseStatistics()
+    {
+        for (Operation operation : Operation.values()) {
+            histograms.put(operation, new Histogram());
+        }
+    }
+
+    /**
+     * Record a timed operation.
+     * @param operation operation
+     * @param start     System.nanoTime() when the operation started
+     * @param rows      rows returned or changed (0 for pool waits)
+     */
+    public void record(Operation operation, long start, long rows)
+    {
+        histograms.get(operation).record(System.nanoTime() - start, rows);
+    }
+
+    /**
+     * Register the statistics with the platform MBean server.
+     * @param namespace configuration namespace the statistics belong to
+     */
+    public void register(ConfigNamespace namespace)
+    {
+        try {
+            String name = namespace.isDefault()
+                ? OBJECT_NAME : OBJECT_NAME + ",namespace=" + ObjectName.quote(namespace.getName());
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(name));
+        } catch (Exception e) {
+            logger.warn("Unable to register database statistics over JMX (" + e.getMessage() + ")");
+        }
+    }
+
+    public long getSelectCount()
+    {
+        return histograms.get(Operation.SELECT).count.sum();
+    }
+
+    public long getSelectMeanMicros()
+    {
+        return histograms.get(Operation.SELECT).meanMicros();
+    }
+
+    public long getSelectP99Micros()
+    {
+        return histograms.get(Operation.SELECT).percentileMicros(99);
+    }
+
+    public long getInsertCount()
+    {
+        return histograms.get(Operation.INSERT).count.sum();
+    }
+
+    public long getInsertMeanMicros()
+    {
+        return histograms.get(Operation.INSERT).meanMicros();
+    }
+
+    public long getInsertP99Micros()
+    {
+        return histograms.get(Operation.INSERT).percentileMicros(99);
+    }
+
+    public long getUpdateCount()
+    {
+        return histograms.get(Operation.UPDATE).count.sum();
+    }
+
+    public long getUpdateMeanMicros()
+    {
+        return histograms.get(Operation.UPDATE).meanMicros();
+    }
+
+    public long getUpdateP99Micros()
+    {
+        return histograms.get(Operation.UPDATE).percentileMicros(99);
+    }
+
+    public long getUpsertCount()
+    {
+        return histograms.get(Operation.UPSERT).count.sum();
+    }
+
+    public long getUpsertMeanMicros()
+    {
+        return histograms.get(Operation.UPSERT).meanMicros();
+    }
+
+    public long getUpsertP99Micros()
+    {
+        return histograms.get(Operation.UPSERT).percentileMicros(99);
+    }
+
+    public long getPoolWaitCount()
+    {
+        return histograms.get(Operation.POOL_WAIT).count.sum();
+    }
+
+    public long getPoolWaitMeanMicros()
+    {
+        return histograms.get(Operation.POOL_WAIT).meanMicros();
+    }
+
+    public long getPoolWaitP99Micros()
+    {
+        return histograms.get(Operation.POOL_WAIT).percentileMicros(99);
+    }
+
+    public long getRowsAffected()
+    {
+        long total = 0;
+        for (Histogram histogram : histograms.values()) {
+            total += histogram.rows.sum();
+        }
+        return total;
+    }
+
+    public String getSummary()
+    {
+        StringBuilder table = new StringBuilder("Database statistics:\n");
+        table.append(String.format("%-10s %10s %10s %10s %10s %10s %10s %10s %10s%n",
+            "operation", "count", "total ms", "mean us", "p50 us", "p95 us", "p99 us", "max us", "rows"));
+        for (Map.Entry<Operation, Histogram> row : histograms.entrySet()) {
+            Histogram current = row.getValue();
+            table.append(String.format("%-10s %10d %10d %10d %10d %10d %10d %10d %10d%n",
+                row.getKey().name().toLowerCase(), current.count.sum(),
+                TimeUnit.NANOSECONDS.toMillis(current.nanos.sum()), current.meanMicros(),
+                current.percentileMicros(50), current.percentileMicros(95), current.percentileMicros(99),
+                TimeUnit.NANOSECONDS.toMicros(current.maxNanos.get()), current.rows.sum()));
+        }
+        return table.toString();
+    }
+
+    public void reset()
+    {
+        for (Histogram histogram : histograms.values()) {
+            histogram.reset();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package org.vufind.index;
+/**
+ * JMX interface of the database statement statistics.
+ *
+ * Copyright (C) Villanova University 2026.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+/**
+ * JMX interface of the database statement statistics.
+ *
+ * Latencies are in microseconds; percentiles are the upper bounds of
+ * power-of-two histogram buckets, so they overestimate by less than a factor
+ * of two.
+ */
+public interface DatabaseStatisticsMBean
+{
+    long getSelectCount();
+
+    long getSelectMeanMicros();
+
+    long getSelectP99Micros();
+
+    long getInsertCount();
+
+    long getInsertMeanMicros();
+
+    long getInsertP99Micros();
+
+    long getUpdateCount();
+
+    long getUpdateMeanMicros();
+
+    long getUpdateP99Micros();
+
+    long getUpsertCount();
+
+    long getUpsertMeanMicros();
+
+    long getUpsertP99Micros();
+
+    /**
+     * Number of connection leases timed.
+     */
+    long getPoolWaitCount();
+
+    long getPoolWaitMeanMicros();
+
+    long getPoolWaitP99Micros();
+
+    /**
+     * Number of rows returned by selects or changed by inserts and updates.
+     */
+    long getRowsAffected();
+
+    /**
+     * Latency table of all statement types.
+     */
+    String getSummary();
+
+    /**
+     * Clear all statistics.
+     */
+    void reset();
+}
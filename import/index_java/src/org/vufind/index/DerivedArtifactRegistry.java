@@ -0,0 +1,170 @@
+package org.vufind.index;
+/**
+ * Registry of values derived from VuFind configuration.
+ *
+ * Copyright (C) Villanova University 2026.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import org.apache.log4j.Logger;
+
+/**
+ * Registry of values derived from VuFind configuration.
+ *
+ * Tools register a builder together with the configuration sections it reads
+ * (compiled patterns, lookup sets, normalized role lists, ...). The registry
+ * builds each artifact once and shares it across threads. When the
+ * configuration is reloaded, an artifact is rebuilt on its next use only if
+ * one of its sections actually changed; otherwise the existing value is kept.
+ * Each ConfigManager (and so each configuration namespace) has its own registry.
+ */
+public class DerivedArtifactRegistry
+{
+    // Initialize logging category
+    static Logger logger = Logger.getLogger(DerivedArtifactRegistry.class.getName());
+
+    private final ConfigManager manager;
+    private final Map<String, Artifact<?>> artifacts = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor
+     * @param manager configuration manager the artifacts are derived from
+     */
+    public DerivedArtifactRegistry(ConfigManager manager)
+    {
+        this.manager = manager;
+    }
+
+    /**
+     * Value built from one configuration snapshot.
+     */
+    private static class Built<T>
+    {
+        final long version;
+        final List<Map<String, String>> inputs;
+        final T value;
+
+        Built(long version, List<Map<String, String>> inputs, T value)
+        {
+            this.version = version;
+            this.inputs = inputs;
+            this.value = value;
+        }
+    }
+
+    /**
+     * Registered artifact.
+     *
+     * @param <T> type of the derived value
+     */
+    public static class Artifact<T>
+    {
+        private final ConfigManager manager;
+        private final String name;
+        private final String filename;
+        private final List<String> sections;
+        private final Supplier<T> builder;
+        private volatile Built<T> built = null;
+
+        private Artifact(ConfigManager manager, String name, String filename, List<String> sections,
+            Supplier<T> builder
+        ) {
+            this.manager = manager;
+            this.name = name;
+            this.filename = filename;
+            this.sections = sections;
+            this.builder = builder;
+        }
+
+        public String getName()
+        {
+            return name;
+        }
+
+        /**
+         * Read the current contents of every section the artifact depends on.
+         */
+        private List<Map<String, String>> readInputs()
+        {
+            ResolvedConfig config = manager.getResolvedConfig(filename);
+            List<Map<String, String>> inputs = new ArrayList<>(sections.size());
+            for (String section : sections) {
+                inputs.add(config.getSection(section));
+            }
+            return inputs;
+        }
+
+        /**
+         * Get the value for the current configuration, building or rebuilding it
+         * if necessary.
+         */
+        public T get()
+        {
+            long version = manager.getConfigVersion();
+            Built<T> current = built;
+            if (current != null && current.version == version) {
+                return current.value;
+            }
+            synchronized (this) {
+                current = built;
+                if (current != null && current.version == version) {
+                    return current.value;
+                }
+                List<Map<String, String>> inputs = readInputs();
+                if (current != null && current.inputs.equals(inputs)) {
+                    built = new Built<>(version, inputs, current.value);
+                    return current.value;
+                }
+                if (current != null) {
+                    logger.info("Rebuilding " + name + " after configuration change");
+                }
+                T value = builder.get();
+                built = new Built<>(version, inputs, value);
+                return value;
+            }
+        }
+    }
+
+    /**
+     * Register an artifact, or return the existing artifact with the same name.
+     * The builder must be thread safe and its result must not be modified.
+     * @param name     unique artifact name
+     * @param builder  function building the artifact
+     * @param filename configuration file the builder reads
+     * @param sections sections of the file the builder reads
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Artifact<T> register(String name, Supplier<T> builder, String filename, String... sections)
+    {
+        return (Artifact<T>)artifacts.computeIfAbsent(
+            name, key -> new Artifact<>(manager, key, filename, Collections.unmodifiableList(Arrays.asList(sections)), builder)
+        );
+    }
+
+    /**
+     * Get the registry of the current thread's configuration namespace.
+     */
+    public static DerivedArtifactRegistry instance()
+    {
+        return ConfigManager.instance().getArtifactRegistry();
+    }
+}
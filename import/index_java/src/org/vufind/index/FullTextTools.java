@@ -37,6 +37,14 @@ public class FullTextTools
     // Initialize logging category
     static Logger logger = Logger.getLogger(FullTextTools.class.getName());
 
+    /**
+     * Constructor (starts the configuration warm-up, if configured)
+     */
+    public FullTextTools()
+    {
+        ConfigManager.startWarmUp();
+    }
+
     /**
      * Load configurations for the full text parser.  Return an array containing the
      * parser type in the first element and the parser configuration in the second
@@ -46,17 +54,16 @@ public class FullTextTools
      */
     public String[] getFulltextParserSettings()
     {
-        String parserType = ConfigManager.instance().getConfigSetting(
-            "fulltext.ini", "General", "parser"
-        );
+        // Read all settings from the same resolved file, so that a configuration
+        // reload cannot give us a mix of old and new values:
+        ResolvedConfig fulltextConfig = ConfigManager.instance().getResolvedConfig("fulltext.ini");
+        String parserType = fulltextConfig.getSetting("General", "parser");
         if (null != parserType) {
             parserType = parserType.toLowerCase();
         }
 
         // Is Aperture active?
-        String aperturePath = ConfigManager.instance().getConfigSetting(
-            "fulltext.ini", "Aperture", "webcrawler"
-        );
+        String aperturePath = fulltextConfig.getSetting("Aperture", "webcrawler");
         if ((null == parserType && null != aperturePath)
             || (null != parserType && parserType.equals("aperture"))
         ) {
@@ -65,9 +72,7 @@ public class FullTextTools
         }
 
         // Is Tika active?
-        String tikaPath = ConfigManager.instance().getConfigSetting(
-            "fulltext.ini", "Tika", "path"
-        );
+        String tikaPath = fulltextConfig.getSetting("Tika", "path");
         if ((null == parserType && null != tikaPath)
             || (null != parserType && parserType.equals("tika"))
         ) {
@@ -0,0 +1,285 @@
+package org.vufind.index;
+/**
+ * Parsed VuFind ini file.
+ *
+ * Copyright (C) Villanova University 2026.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Parsed VuFind ini file.
+ *
+ * Files are read as UTF-8 in a single pass, building both the raw and the
+ * sanitized value of every setting as it is read. The syntax follows the ini4j
+ * library previously used by the indexer:
+ *
+ * - lines starting with ";" or "#" are comments; other semicolons are kept in
+ *   the raw value and stripped by sanitizing
+ * - a setting is split at the first "=" or ":"; keys and values are trimmed
+ * - backslash escapes (such as \\, \t and Unicode escapes) are decoded, and
+ *   a line ending in a single backslash continues on the next line (a
+ *   setting still continued at the end of the file is dropped)
+ * - a repeated key (such as "setting[] = ...") keeps the last value
+ * - a repeated section continues the earlier section
+ */
+public class IniFile
+{
+    private static final Pattern QUOTED_SEMICOLON = Pattern.compile("\"[^\"]*;[^\"]*\"");
+
+    private final Map<String, Map<String, String>> rawSections = new LinkedHashMap<>();
+    private final Map<String, Map<String, String>> sanitizedSections = new LinkedHashMap<>();
+
+    private IniFile()
+    {
+    }
+
+    /**
+     * Read an ini file.
+     * @param file file to read
+     * @throws IOException if the file cannot be read or is not a valid ini file
+     */
+    public static IniFile load(File file) throws IOException
+    {
+        try (BufferedReader reader = new BufferedReader(
+            new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)
+        )) {
+            return parse(reader);
+        }
+    }
+
+    /**
+     * Parse ini content.
+     * @param reader content to parse
+     * @throws IOException if the content cannot be read or is not valid
+     */
+    public static IniFile parse(BufferedReader reader) throws IOException
+    {
+        IniFile ini = new IniFile();
+        Map<String, String> raw = null;
+        Map<String, String> sanitized = null;
+        StringBuilder continued = null;
+        int lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (lineNumber == 1 && line.startsWith("\uFEFF")) {
+                line = line.substring(1);
+            }
+            line = line.trim();
+            if (continued != null) {
+                continued.append(line);
+                line = continued.toString();
+                continued = null;
+            } else if (line.isEmpty() || line.charAt(0) == ';' || line.charAt(0) == '#') {
+                continue;
+            }
+            if (endsWithContinuation(line)) {
+                continued = new StringBuilder(line.length() + 64).append(line, 0, line.length() - 1);
+                continue;
+            }
+
+            if (line.charAt(0) == '[' && line.charAt(line.length() - 1) == ']') {
+                String name = unescape(line.substring(1, line.length() - 1).trim());
+                if (name.isEmpty()) {
+                    throw parseError(lineNumber, line);
+                }
+                raw = ini.rawSections.computeIfAbsent(name, k -> new LinkedHashMap<>());
+                sanitized = ini.sanitizedSections.computeIfAbsent(name, k -> new LinkedHashMap<>());
+                continue;
+            }
+
+            int operator = findOperator(line);
+            if (raw == null || operator <= 0) {
+                throw parseError(lineNumber, line);
+            }
+            String key = unescape(line.substring(0, operator).trim());
+            String value = unescape(line.substring(operator + 1).trim());
+            if (key.isEmpty()) {
+                throw parseError(lineNumber, line);
+            }
+            raw.put(key, value);
+            sanitized.put(key, sanitize(value));
+        }
+        return ini;
+    }
+
+    /**
+     * Does a line end with an odd number of backslashes?
+     * @param line line to check
+     */
+    private static boolean endsWithContinuation(String line)
+    {
+        int count = 0;
+        for (int i = line.length() - 1; i >= 0 && line.charAt(i) == '\\'; i--) {
+            count++;
+        }
+        return count % 2 == 1;
+    }
+
+    /**
+     * Find the first unescaped "=" or ":" in a line.
+     * @param line line to search
+     * @return position, or -1 if there is none
+     */
+    private static int findOperator(CharSequence line)
+    {
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '=' || c == ':') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Decode backslash escapes.
+     * @param str string to decode
+     */
+    private static String unescape(String str)
+    {
+        int pos = str.indexOf('\\');
+        if (pos < 0) {
+            return str;
+        }
+        StringBuilder buffer = new StringBuilder(str.length());
+        buffer.append(str, 0, pos);
+        for (int i = pos; i < str.length(); i++) {
+            char c = str.charAt(i);
+            if (c != '\\' || i + 1 >= str.length()) {
+                buffer.append(c);
+                continue;
+            }
+            c = str.charAt(++i);
+            switch (c) {
+            case 't':
+                buffer.append('\t');
+                break;
+            case 'n':
+                buffer.append('\n');
+                break;
+            case 'r':
+                buffer.append('\r');
+                break;
+            case 'f':
+                buffer.append('\f');
+                break;
+            case 'b':
+                buffer.append('\b');
+                break;
+            case 'u':
+                if (i + 4 < str.length()) {
+                    try {
+                        buffer.append((char)Integer.parseInt(str.substring(i + 1, i + 5), 16));
+                        i += 4;
+                        break;
+                    } catch (NumberFormatException e) {
+                        // Not a Unicode escape; keep the character as-is.
+                    }
+                }
+                buffer.append(c);
+                break;
+            default:
+                buffer.append(c);
+            }
+        }
+        return buffer.toString();
+    }
+
+    /**
+     * Sanitize a VuFind configuration setting.
+     * @param str configuration setting
+     */
+    static String sanitize(String str)
+    {
+        String retVal = str;
+
+        // Drop comments if necessary; if the semi-colon is inside quotes, leave
+        // it alone. TODO: handle complex cases with comment AND quoted semi-colon
+        int pos = retVal.indexOf(';');
+        if (pos >= 0 && !QUOTED_SEMICOLON.matcher(retVal).matches()) {
+            retVal = retVal.substring(0, pos).trim();
+        }
+
+        // Strip wrapping quotes if necessary:
+        if (retVal.startsWith("\"")) {
+            retVal = retVal.substring(1, retVal.length());
+        }
+        if (retVal.endsWith("\"")) {
+            retVal = retVal.substring(0, retVal.length() - 1);
+        }
+        return retVal;
+    }
+
+    /**
+     * Build the exception for an invalid line.
+     * @param lineNumber line number
+     * @param line       line content
+     */
+    private static IOException parseError(int lineNumber, String line)
+    {
+        return new IOException("parse error (at line: " + lineNumber + "): " + line);
+    }
+
+    /**
+     * Get the section names, in file order.
+     */
+    public Iterable<String> getSectionNames()
+    {
+        return Collections.unmodifiableSet(rawSections.keySet());
+    }
+
+    /**
+     * Get the raw values of a section (null if the section is missing).
+     * @param section section name
+     */
+    public Map<String, String> getRawSection(String section)
+    {
+        return rawSections.get(section);
+    }
+
+    /**
+     * Get the sanitized values of a section (null if the section is missing).
+     * @param section section name
+     */
+    public Map<String, String> getSection(String section)
+    {
+        return sanitizedSections.get(section);
+    }
+
+    /**
+     * Get a raw setting (null if missing).
+     * @param section section name
+     * @param setting setting name
+     */
+    public String get(String section, String setting)
+    {
+        Map<String, String> values = rawSections.get(section);
+        return values == null ? null : values.get(setting);
+    }
+}
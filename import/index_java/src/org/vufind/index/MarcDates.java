@@ -0,0 +1,178 @@
+package org.vufind.index;
+/**
+ * Allocation-free parsing of MARC transaction dates.
+ *
+ * Copyright (C) Villanova University 2026.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.TimeZone;
+
+/**
+ * Allocation-free parsing of MARC transaction dates.
+ *
+ * Dates are returned as "local epoch seconds": the seconds from 1970-01-01
+ * 00:00:00 to the date as written in the record, with no time zone applied
+ * (the same value as LocalDateTime.toEpochSecond(ZoneOffset.UTC)). Values that
+ * cannot be parsed return INVALID instead of throwing. The parsers accept the
+ * same input as the DateTimeFormatter patterns they replace: "yyyyMMddHHmmss.S"
+ * for the 005 and "yyMMdd" (years 2000-2099) for 008/00-05, with a day past
+ * the end of its month moved back to the last day of the month and 24:00:00.0
+ * read as midnight of the next day.
+ */
+public class MarcDates
+{
+    /**
+     * Returned for values that cannot be parsed.
+     */
+    public static final long INVALID = Long.MIN_VALUE;
+
+    private static final long SECONDS_PER_DAY = 86400;
+
+    // Zone used by the JDBC driver to convert Timestamps:
+    private static final TimeZone zone = TimeZone.getDefault();
+
+    /**
+     * Parse a 005 (date and time of latest transaction, yyyymmddhhmmss.f).
+     * @param value field data (may be null)
+     * @return local epoch seconds (tenths of seconds are dropped), or INVALID
+     */
+    public static long parse005(CharSequence value)
+    {
+        if (value == null || value.length() != 16 || value.charAt(14) != '.' || digit(value, 15) < 0) {
+            return INVALID;
+        }
+        int year = number(value, 0, 4);
+        int month = number(value, 4, 2);
+        int day = number(value, 6, 2);
+        int hour = number(value, 8, 2);
+        int minute = number(value, 10, 2);
+        int second = number(value, 12, 2);
+        // (24:00:00.0 is accepted as midnight at the end of the day)
+        boolean endOfDay = hour == 24 && minute == 0 && second == 0 && digit(value, 15) == 0;
+        if (hour < 0 || hour > 23 && !endOfDay || minute < 0 || minute > 59 || second < 0 || second > 59) {
+            return INVALID;
+        }
+        long days = epochDay(year, month, day);
+        if (days == INVALID) {
+            return INVALID;
+        }
+        return days * SECONDS_PER_DAY + hour * 3600 + minute * 60 + second;
+    }
+
+    /**
+     * Parse the date entered on file of an 008 (positions 00-05, yymmdd).
+     * Two-digit years are read as 2000-2099, as they always have been here,
+     * so that stored change dates stay comparable.
+     * @param value field data (may be null; only the first six characters are read)
+     * @return local epoch seconds of the start of the day, or INVALID
+     */
+    public static long parse008(CharSequence value)
+    {
+        if (value == null || value.length() < 6) {
+            return INVALID;
+        }
+        int year = number(value, 0, 2);
+        if (year < 0) {
+            return INVALID;
+        }
+        long days = epochDay(2000 + year, number(value, 2, 2), number(value, 4, 2));
+        return days == INVALID ? INVALID : days * SECONDS_PER_DAY;
+    }
+
+    /**
+     * Convert local epoch seconds to a Timestamp (in the default time zone,
+     * like Timestamp.valueOf(LocalDateTime)).
+     * @param seconds local epoch seconds
+     */
+    public static Timestamp toTimestamp(long seconds)
+    {
+        return Timestamp.valueOf(LocalDateTime.ofEpochSecond(seconds, 0, ZoneOffset.UTC));
+    }
+
+    /**
+     * Convert a Timestamp (in the default time zone) to local epoch seconds,
+     * rounded to the nearest second.
+     * @param date date to convert
+     */
+    public static long toEpochSecond(Timestamp date)
+    {
+        long millis = date.getTime();
+        return Math.floorDiv(millis + zone.getOffset(millis) + 500, 1000);
+    }
+
+    /**
+     * Get the value of the decimal digit at a position (-1 if not a digit).
+     */
+    private static int digit(CharSequence value, int index)
+    {
+        char c = value.charAt(index);
+        return c >= '0' && c <= '9' ? c - '0' : -1;
+    }
+
+    /**
+     * Get the value of a run of decimal digits (-1 if any is not a digit).
+     */
+    private static int number(CharSequence value, int start, int length)
+    {
+        int result = 0;
+        for (int i = start; i < start + length; i++) {
+            int digit = digit(value, i);
+            if (digit < 0) {
+                return -1;
+            }
+            result = result * 10 + digit;
+        }
+        return result;
+    }
+
+    /**
+     * Get the days since 1970-01-01 of a date (INVALID if the year, month or
+     * day is out of range; days past the end of the month are moved back).
+     */
+    private static long epochDay(int year, int month, int day)
+    {
+        if (year < 1 || month < 1 || month > 12 || day < 1 || day > 31) {
+            return INVALID;
+        }
+        day = Math.min(day, monthLength(year, month));
+
+        // Count from 0000-03-01, so that the leap day is at the end of a year:
+        int y = month <= 2 ? year - 1 : year;
+        int era = y / 400;
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468;
+    }
+
+    private static int monthLength(int year, int month)
+    {
+        switch (month) {
+        case 2:
+            return (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) ? 29 : 28;
+        case 4:
+        case 6:
+        case 9:
+        case 11:
+            return 30;
+        default:
+            return 31;
+        }
+    }
+}
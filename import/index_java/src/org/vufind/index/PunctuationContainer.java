@@ -18,88 +18,110 @@ package org.vufind.index;
  * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
  */
 
+import java.util.Collections;
 import java.util.LinkedHashSet;
 import java.util.regex.Pattern;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import org.apache.log4j.Logger;
 
 /**
  * Singleton for storing punctuation configuration information.
+ *
+ * One container is shared by all indexer threads. Each set is a derived
+ * artifact: it is built on first use (or during warm-up), never modified
+ * afterwards, and rebuilt only when its configuration section changes.
  */
 public class PunctuationContainer
 {
     // Initialize logging category
     static Logger logger = Logger.getLogger(ConfigManager.class.getName());
 
-    private static ThreadLocal<PunctuationContainer> containerCache =
-        new ThreadLocal<PunctuationContainer>()
-        {
-            @Override
-            protected PunctuationContainer initialValue()
-            {
-                return new PunctuationContainer();
-            }
-        };
+    // One container per configuration namespace (keyed by its manager):
+    private static final Map<ConfigManager, PunctuationContainer> instances = new ConcurrentHashMap<>();
 
     private static String configFilename = "author-classification.ini";
 
-    private Set<Pattern> punctuationRegEx = null;
-    private Set<String> punctuationPairs = null;
-    private Set<String> untrimmedAbbreviations = null;
+    private final ConfigManager manager;
+    private final DerivedArtifactRegistry.Artifact<Set<Pattern>> punctuationRegEx;
+    private final DerivedArtifactRegistry.Artifact<Set<String>> punctuationPairs;
+    private final DerivedArtifactRegistry.Artifact<Set<String>> untrimmedAbbreviations;
 
-    public Set<Pattern> getPunctuationRegEx()
+    /**
+     * Load the values of a configuration section, warning if it is missing.
+     * @param configSection section name
+     */
+    private Map<String, String> loadSection(String configSection)
     {
-        // Populate set if empty:
-        if (punctuationRegEx == null) {
-            punctuationRegEx = new LinkedHashSet<Pattern>();
-            String configSection = "PunctuationRegExToStrip";
-            Map<String, String> all = ConfigManager.instance().getConfigSection(configFilename, configSection);
-            if (all.isEmpty()) {
-                logger.warn(configSection + " section missing from " + configFilename);
-            } else {
-                for (String pattern : all.values()) {
-                    punctuationRegEx.add(Pattern.compile(pattern, Pattern.UNICODE_CHARACTER_CLASS));
-                }
-            }
+        Map<String, String> all = manager.getConfigSection(configFilename, configSection);
+        if (all.isEmpty()) {
+            logger.warn(configSection + " section missing from " + configFilename);
         }
-        return punctuationRegEx;
+        return all;
     }
 
-    public Set<String> getPunctuationPairs()
+    /**
+     * Build an unmodifiable set of the values in a configuration section.
+     * @param configSection section name
+     */
+    private Set<String> buildSet(String configSection)
     {
-        // Populate set if empty:
-        if (punctuationPairs == null) {
-            String configSection = "PunctuationMatchedChars";
-            Map<String, String> all = ConfigManager.instance().getConfigSection(configFilename, configSection);
-            if (all.isEmpty()) {
-                punctuationPairs = new LinkedHashSet<String>();
-                logger.warn(configSection + " section missing from " + configFilename);
-            } else {
-                punctuationPairs = new LinkedHashSet<String>(all.values());
-            }
+        return Collections.unmodifiableSet(new LinkedHashSet<String>(loadSection(configSection).values()));
+    }
+
+    private Set<Pattern> buildPunctuationRegEx()
+    {
+        Set<Pattern> patterns = new LinkedHashSet<Pattern>();
+        for (String pattern : loadSection("PunctuationRegExToStrip").values()) {
+            patterns.add(Pattern.compile(pattern, Pattern.UNICODE_CHARACTER_CLASS));
         }
-        return punctuationPairs;
+        return Collections.unmodifiableSet(patterns);
+    }
+
+    public Set<Pattern> getPunctuationRegEx()
+    {
+        return punctuationRegEx.get();
+    }
+
+    public Set<String> getPunctuationPairs()
+    {
+        return punctuationPairs.get();
     }
 
     public Set<String> getUntrimmedAbbreviations()
     {
-        // Populate set if empty:
-        if (untrimmedAbbreviations == null) {
-            String configSection = "PunctuationUntrimmedAbbreviations";
-            Map<String, String> all = ConfigManager.instance().getConfigSection(configFilename, configSection);
-            if (all.isEmpty()) {
-                untrimmedAbbreviations = new LinkedHashSet<String>();
-                logger.warn(configSection + " section missing from " + configFilename);
-            } else {
-                untrimmedAbbreviations = new LinkedHashSet<String>(all.values());
-            }
-        }
-        return untrimmedAbbreviations;
+        return untrimmedAbbreviations.get();
+    }
+
+    /**
+     * Constructor
+     * @param manager configuration manager to read from
+     */
+    private PunctuationContainer(ConfigManager manager)
+    {
+        this.manager = manager;
+        punctuationRegEx = manager.getArtifactRegistry().register(
+            "PunctuationContainer.punctuationRegEx", this::buildPunctuationRegEx,
+            configFilename, "PunctuationRegExToStrip"
+        );
+        punctuationPairs = manager.getArtifactRegistry().register(
+            "PunctuationContainer.punctuationPairs", () -> buildSet("PunctuationMatchedChars"),
+            configFilename, "PunctuationMatchedChars"
+        );
+        untrimmedAbbreviations = manager.getArtifactRegistry().register(
+            "PunctuationContainer.untrimmedAbbreviations", () -> buildSet("PunctuationUntrimmedAbbreviations"),
+            configFilename, "PunctuationUntrimmedAbbreviations"
+        );
     }
 
+    /**
+     * Get the container of the current thread's configuration namespace.
+     */
     public static PunctuationContainer instance()
     {
-        return containerCache.get();
+        ConfigManager manager = ConfigManager.instance();
+        PunctuationContainer container = instances.get(manager);
+        return container != null ? container : instances.computeIfAbsent(manager, PunctuationContainer::new);
     }
 }
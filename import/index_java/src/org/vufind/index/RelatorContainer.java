@@ -18,64 +18,152 @@ package org.vufind.index;
  * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
  */
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
 import org.apache.log4j.Logger;
 
 /**
  * Singleton for storing relator information.
+ *
+ * One container is shared by all indexer threads. Each value is a derived
+ * artifact built from the relator sections of author-classification.ini (with
+ * the container's own normalization, so no caller can change it), and rebuilt
+ * only when those sections change.
  */
 public class RelatorContainer
 {
     // Initialize logging category
     static Logger logger = Logger.getLogger(ConfigManager.class.getName());
 
-    private static ThreadLocal<RelatorContainer> containerCache =
-        new ThreadLocal<RelatorContainer>()
-        {
-            @Override
-            protected RelatorContainer initialValue()
-            {
-                return new RelatorContainer();
-            }
-        };
+    // One container per configuration namespace (keyed by its manager):
+    private static final Map<ConfigManager, RelatorContainer> instances = new ConcurrentHashMap<>();
 
     private static String configFilename = "author-classification.ini";
 
-    private ConcurrentHashMap<String, String> relatorSynonymLookup = new ConcurrentHashMap<String, String>();
-    private Set<String> knownRelators = new LinkedHashSet<String>();
-    private Set<String> relatorPrefixesToStrip = null;
+    //POSIX character class Punctuation: One of !"#$%&'()*+,-./:;<=>?@[\]^_`{|}~
+    private static final Pattern punctuation = Pattern.compile("\\p{Punct}+");
 
-    public ConcurrentHashMap<String, String> getSynonymLookup()
+    private final ConfigManager manager;
+    private final DerivedArtifactRegistry.Artifact<Map<String, String>> relatorSynonymLookup;
+    private final DerivedArtifactRegistry.Artifact<Set<String>> relatorPrefixesToStrip;
+    private final DerivedArtifactRegistry.Artifact<Set<String>> knownRelators;
+
+    /**
+     * Get the map of normalized relator synonyms to the relators they belong to.
+     */
+    public Map<String, String> getSynonymLookup()
     {
-        return relatorSynonymLookup;
+        return relatorSynonymLookup.get();
     }
 
+    /**
+     * Get the known relators: every relator and synonym from the
+     * RelatorSynonyms section, normalized.
+     */
     public Set<String> getKnownRelators()
     {
-        return knownRelators;
+        return knownRelators.get();
     }
 
     public Set<String> getRelatorPrefixesToStrip()
     {
-        // Populate set if empty:
-        if (relatorPrefixesToStrip == null) {
-            String configSection = "RelatorPrefixesToStrip";
-            Map<String, String> all = ConfigManager.instance().getConfigSection(configFilename, configSection);
-            if (all.isEmpty()) {
-                relatorPrefixesToStrip = new LinkedHashSet<String>();
-                logger.warn(configSection + " section missing from " + configFilename);
-            } else {
-                relatorPrefixesToStrip = new LinkedHashSet<String>(all.values());
+        return relatorPrefixesToStrip.get();
+    }
+
+    /**
+     * Normalize a relator: strip the first matching prefix, lowercase it and
+     * remove punctuation.
+     * @param relator relator to normalize
+     * @return normalized relator
+     */
+    public String normalize(String relator)
+    {
+        relator = relator.trim();
+        for (String prefix : getRelatorPrefixesToStrip()) {
+            if (relator.startsWith(prefix)) {
+                relator = relator.substring(prefix.length());
+                break;
+            }
+        }
+        return punctuation.matcher(relator.toLowerCase()).replaceAll("");
+    }
+
+    private Map<String, String> buildSynonymLookup()
+    {
+        Map<String, String> lookup = new LinkedHashMap<String, String>();
+        Map<String, String> all = manager.getConfigSection(configFilename, "RelatorSynonyms");
+        for (String key : all.keySet()) {
+            for (String synonym: all.get(key).split("\\|")) {
+                lookup.put(normalize(synonym), key);
+            }
+        }
+        return Collections.unmodifiableMap(lookup);
+    }
+
+    private Set<String> buildKnownRelators()
+    {
+        Set<String> relators = new LinkedHashSet<String>();
+        Map<String, String> all = manager.getConfigSection(configFilename, "RelatorSynonyms");
+        for (String key : all.keySet()) {
+            relators.add(normalize(key));
+            for (String synonym: all.get(key).split("\\|")) {
+                relators.add(normalize(synonym));
             }
         }
-        return relatorPrefixesToStrip;
+        return Collections.unmodifiableSet(relators);
+    }
+
+    private Set<String> buildRelatorPrefixesToStrip()
+    {
+        String configSection = "RelatorPrefixesToStrip";
+        Map<String, String> all = manager.getConfigSection(configFilename, configSection);
+        if (all.isEmpty()) {
+            logger.warn(configSection + " section missing from " + configFilename);
+        }
+        return Collections.unmodifiableSet(new LinkedHashSet<String>(all.values()));
     }
 
+    /**
+     * Constructor
+     * @param manager configuration manager to read from
+     */
+    private RelatorContainer(ConfigManager manager)
+    {
+        this.manager = manager;
+        relatorPrefixesToStrip = manager.getArtifactRegistry().register(
+            "RelatorContainer.relatorPrefixesToStrip", this::buildRelatorPrefixesToStrip,
+            configFilename, "RelatorPrefixesToStrip"
+        );
+        relatorSynonymLookup = manager.getArtifactRegistry().register(
+            "RelatorContainer.relatorSynonymLookup", this::buildSynonymLookup,
+            configFilename, "RelatorSynonyms", "RelatorPrefixesToStrip"
+        );
+        knownRelators = manager.getArtifactRegistry().register(
+            "RelatorContainer.knownRelators", this::buildKnownRelators,
+            configFilename, "RelatorSynonyms", "RelatorPrefixesToStrip"
+        );
+    }
+
+    /**
+     * Get the container of the current thread's configuration namespace.
+     */
     public static RelatorContainer instance()
     {
-        return containerCache.get();
+        return instance(ConfigManager.instance());
+    }
+
+    /**
+     * Get the container of a configuration manager's namespace.
+     * @param manager configuration manager
+     */
+    public static RelatorContainer instance(ConfigManager manager)
+    {
+        RelatorContainer container = instances.get(manager);
+        return container != null ? container : instances.computeIfAbsent(manager, RelatorContainer::new);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,165 @@
+package org.vufind.index;
+/**
+ * Fully resolved VuFind configuration file.
+ *
+ * Copyright (C) Villanova University 2026.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Fully resolved VuFind configuration file.
+ *
+ * Holds every section of a configuration file after its Parent_Config chain
+ * and Extra_Config local overrides have been merged in, both as raw values and
+ * as sanitized values. Instances are immutable, so they can be shared between
+ * indexer threads without locking. Typed settings (see ConfigKey) are parsed on
+ * first use and cached alongside the values they were parsed from.
+ */
+public class ResolvedConfig
+{
+    private final String filename;
+    private final List<File> sourceFiles;
+    private final Map<String, Map<String, String>> rawSections;
+    private final Map<String, Map<String, String>> sanitizedSections;
+    private final Map<ConfigKey<?>, Object> typedSettings = new ConcurrentHashMap<>();
+
+    // Placeholder for missing settings in typedSettings (which cannot hold nulls):
+    private static final Object MISSING = new Object();
+
+    /**
+     * Constructor
+     * @param filename          configuration file name
+     * @param sourceFiles       files merged into this configuration
+     * @param rawSections       merged raw values (section => key => value)
+     * @param sanitizedSections merged sanitized values (section => key => value)
+     */
+    public ResolvedConfig(String filename, List<File> sourceFiles,
+        Map<String, Map<String, String>> rawSections,
+        Map<String, Map<String, String>> sanitizedSections
+    ) {
+        this.filename = filename;
+        this.sourceFiles = Collections.unmodifiableList(new ArrayList<>(sourceFiles));
+        this.rawSections = freeze(rawSections);
+        this.sanitizedSections = freeze(sanitizedSections);
+    }
+
+    /**
+     * Make an unmodifiable deep copy of a section map, preserving key order.
+     * @param sections section map to copy
+     */
+    private static Map<String, Map<String, String>> freeze(Map<String, Map<String, String>> sections)
+    {
+        Map<String, Map<String, String>> copy = new LinkedHashMap<>();
+        for (Map.Entry<String, Map<String, String>> entry : sections.entrySet()) {
+            copy.put(entry.getKey(), Collections.unmodifiableMap(new LinkedHashMap<>(entry.getValue())));
+        }
+        return Collections.unmodifiableMap(copy);
+    }
+
+    /**
+     * Get the name of the configuration file.
+     */
+    public String getFilename()
+    {
+        return filename;
+    }
+
+    /**
+     * Get the files (main file, parents and local overrides) merged into this
+     * configuration.
+     */
+    public List<File> getSourceFiles()
+    {
+        return sourceFiles;
+    }
+
+    /**
+     * Get the names of all sections in the resolved file.
+     */
+    public Iterable<String> getSectionNames()
+    {
+        return rawSections.keySet();
+    }
+
+    /**
+     * Get a raw section (null if the section is missing).
+     * @param section section name within the file
+     */
+    public Map<String, String> getRawSection(String section)
+    {
+        return rawSections.get(section);
+    }
+
+    /**
+     * Get a sanitized section (empty if the section is missing).
+     * @param section section name within the file
+     */
+    public Map<String, String> getSection(String section)
+    {
+        Map<String, String> sectionMap = sanitizedSections.get(section);
+        return sectionMap == null ? Collections.emptyMap() : sectionMap;
+    }
+
+    /**
+     * Get a raw setting (null if missing).
+     * @param section section name within the file
+     * @param setting setting name within the section
+     */
+    public String getRawSetting(String section, String setting)
+    {
+        Map<String, String> sectionMap = rawSections.get(section);
+        return sectionMap == null ? null : sectionMap.get(setting);
+    }
+
+    /**
+     * Get a sanitized setting (null if missing).
+     * @param section section name within the file
+     * @param setting setting name within the section
+     */
+    public String getSetting(String section, String setting)
+    {
+        Map<String, String> sectionMap = sanitizedSections.get(section);
+        return sectionMap == null ? null : sectionMap.get(setting);
+    }
+
+    /**
+     * Get a typed setting, parsing the sanitized value on first use.
+     * @param key setting to look up
+     * @throws IllegalArgumentException if the value is not valid for the key
+     */
+    public <T> T getTypedSetting(ConfigKey<T> key)
+    {
+        Object value = typedSettings.get(key);
+        if (value == null) {
+            String sanitized = getSetting(key.getSection(), key.getSetting());
+            value = sanitized == null ? MISSING : key.parse(sanitized);
+            typedSettings.putIfAbsent(key, value);
+        }
+        if (value == MISSING) {
+            return key.getDefaultValue();
+        }
+        @SuppressWarnings("unchecked")
+        T typedValue = (T)value;
+        return typedValue;
+    }
+}
@@ -18,13 +18,13 @@ package org.vufind.index;
  * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
  */
 
-import java.time.format.DateTimeFormatter;
-import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import org.solrmarc.index.SolrIndexer;
 import org.solrmarc.tools.SolrMarcIndexerException;
+import org.marc4j.marc.ControlField;
 import org.marc4j.marc.Record;
+import org.marc4j.marc.VariableField;
 import org.apache.log4j.Logger;
 
 /**
@@ -35,53 +35,12 @@ public class UpdateDateTools
     // Initialize logging category
     static Logger logger = Logger.getLogger(UpdateDateTools.class.getName());
 
-    // the SimpleDateFormat class is not Thread-safe the below line were changes to be not static
-    // which given the rest of the design of SolrMarc will make them work correctly.
-    private DateTimeFormatter marc005date = DateTimeFormatter.ofPattern("yyyyMMddHHmmss.S");
-    private DateTimeFormatter marc008date = DateTimeFormatter.ofPattern("yyMMdd");
-
     /**
-     * Support method for getLatestTransaction.
-     * @return Date extracted from 005 (or very old date, if unavailable)
+     * Constructor (starts the configuration warm-up, if configured)
      */
-    private LocalDateTime normalize005Date(String input)
+    public UpdateDateTools()
     {
-        // Normalize "null" strings to a generic bad value:
-        if (input == null) {
-            input = "null";
-        }
-
-        // Try to parse the date; default to "millisecond 0" (very old date) if we can't
-        // parse the data successfully.
-        LocalDateTime retVal;
-        try {
-            retVal = LocalDateTime.parse(input, marc005date);
-        } catch(java.time.format.DateTimeParseException e) {
-            retVal = LocalDateTime.ofEpochSecond(0, 0, ZoneOffset.UTC);
-        }
-        return retVal;
-    }
-
-    /**
-     * Support method for getLatestTransaction.
-     * @return Date extracted from 008 (or very old date, if unavailable)
-     */
-    private LocalDateTime normalize008Date(String input)
-    {
-        // Normalize "null" strings to a generic bad value:
-        if (input == null || input.length() < 6) {
-            input = "null";
-        }
-
-        // Try to parse the date; default to "millisecond 0" (very old date) if we can't
-        // parse the data successfully.
-        LocalDateTime retVal;
-        try {
-            retVal = LocalDate.parse(input.substring(0, 6), marc008date).atStartOfDay();
-        } catch(java.lang.StringIndexOutOfBoundsException | java.time.format.DateTimeParseException e) {
-            retVal = LocalDateTime.ofEpochSecond(0, 0, ZoneOffset.UTC);
-        }
-        return retVal;
+        ConfigManager.startWarmUp();
     }
 
     /**
@@ -92,20 +51,41 @@ public class UpdateDateTools
      * @return Latest transaction date.
      */
     public LocalDateTime getLatestTransaction(Record record) {
+        return LocalDateTime.ofEpochSecond(getLatestTransactionSeconds(record), 0, ZoneOffset.UTC);
+    }
+
+    /**
+     * Extract the latest transaction date from the MARC record as local epoch
+     * seconds (see MarcDates), without allocating any date objects.
+     *
+     * @param record MARC record
+     * @return Latest transaction date (0, a very old date, if unavailable).
+     */
+    public long getLatestTransactionSeconds(Record record) {
         // First try the 005 -- this is most likely to have a precise transaction date:
-        for (String current005 : SolrIndexer.instance().getFieldList(record, "005")) {
-            return normalize005Date(current005);
+        VariableField field = record.getVariableField("005");
+        if (field instanceof ControlField) {
+            return validOrZero(MarcDates.parse005(((ControlField)field).getData()));
         }
 
         // No luck with 005?  Try 008 next -- less precise, but better than nothing:
-        for (String current008 : SolrIndexer.instance().getFieldList(record, "008")) {
-            return normalize008Date(current008);
+        field = record.getVariableField("008");
+        if (field instanceof ControlField) {
+            return validOrZero(MarcDates.parse008(((ControlField)field).getData()));
         }
 
         // If we got this far, we couldn't find a valid value; return an arbitrary date:
-        return LocalDateTime.ofEpochSecond(0, 0, ZoneOffset.UTC);
+        return 0;
     }
 
+    /**
+     * Support method for getLatestTransactionSeconds: replace unparseable dates
+     * with "second 0" (very old date).
+     */
+    private long validOrZero(long seconds)
+    {
+        return seconds == MarcDates.INVALID ? 0 : seconds;
+    }
 
     /**
      * Update the index date in the database for the specified core/ID pair.  We
@@ -114,18 +94,86 @@ public class UpdateDateTools
      * fashion that can survive even a total Solr rebuild.
      */
     public void updateTracker(String core, String id, LocalDateTime latestTransaction)
+    {
+        updateTracker(core, id, latestTransaction.toEpochSecond(ZoneOffset.UTC));
+    }
+
+    /**
+     * Update the index date in the database for the specified core/ID pair,
+     * given the latest transaction date as local epoch seconds (see MarcDates).
+     */
+    public void updateTracker(String core, String id, long latestTransaction)
     {
         // Update the database (if necessary):
         try {
             UpdateDateTracker.instance().index(core, id, latestTransaction);
         } catch (java.sql.SQLException e) {
-            // If we're in the process of shutting down, an error is expected:
-            if (!DatabaseManager.instance().isShuttingDown()) {
-                dieWithError("Unexpected database error");
+            // If we're in the process of shutting down, an error is expected
+            // (unless it reports a failed write-behind or journal write):
+            DatabaseManager manager = DatabaseManager.instance();
+            if (!manager.isShuttingDown() || manager.getTrackerSink() != null) {
+                dieWithError("Unexpected database error: " + e.getMessage());
             }
+            return;
+        }
+
+        // In skip-unchanged mode, drop records that have not changed since they
+        // were last indexed -- their Solr documents are already up to date:
+        if (UpdateDateTracker.instance().isUnchanged() && isSkippingUnchanged()) {
+            logger.debug("Skipping unchanged record " + core + ":" + id);
+            throw new SolrMarcIndexerException(SolrMarcIndexerException.IGNORE, "Record " + id + " is unchanged");
         }
     }
 
+    /**
+     * Is skip-unchanged mode (vufind.change_tracker.skip_unchanged) enabled?
+     */
+    private boolean isSkippingUnchanged()
+    {
+        return Boolean.parseBoolean(
+            ConfigManager.instance().getIndexerProperty("vufind.change_tracker.skip_unchanged", "false")
+        );
+    }
+
+    /**
+     * Get the ID of the current record, updating its index dates first.  In
+     * skip-unchanged mode, a record that has not changed since it was last
+     * indexed is dropped here, before any later field is processed.
+     *
+     * @param record current MARC record
+     * @param fieldSpec fields / subfields to be analyzed
+     * @param core core name
+     * @return ID string
+     */
+    public String getIdUnlessUnchanged(Record record, String fieldSpec, String core) {
+        String id = SolrIndexer.instance().getFirstFieldVal(record, fieldSpec);
+        updateTracker(core, id, getLatestTransactionSeconds(record));
+        return id;
+    }
+
+    /**
+     * Get the ID of the current record, updating its index dates first (and
+     * dropping the record if it is unchanged, in skip-unchanged mode).
+     *
+     * @param record current MARC record
+     * @param fieldSpec fields / subfields to be analyzed
+     * @return ID string
+     */
+    public String getIdUnlessUnchanged(Record record, String fieldSpec) {
+        return getIdUnlessUnchanged(record, fieldSpec, "biblio");
+    }
+
+    /**
+     * Get the ID of the current record, updating its index dates first (and
+     * dropping the record if it is unchanged, in skip-unchanged mode).
+     *
+     * @param record current MARC record
+     * @return ID string
+     */
+    public String getIdUnlessUnchanged(Record record) {
+        return getIdUnlessUnchanged(record, "001", "biblio");
+    }
+
     /**
      * Get the "first indexed" date for the current record.  (This is the first
      * time that SolrMarc ever encountered this particular record).
@@ -137,7 +185,7 @@ public class UpdateDateTools
      */
     public String getFirstIndexed(Record record, String fieldSpec, String core) {
         // Update the database, then send back the first indexed date:
-        updateTracker(core, SolrIndexer.instance().getFirstFieldVal(record, fieldSpec), getLatestTransaction(record));
+        updateTracker(core, SolrIndexer.instance().getFirstFieldVal(record, fieldSpec), getLatestTransactionSeconds(record));
         return UpdateDateTracker.instance().getFirstIndexed();
     }
 
@@ -175,7 +223,7 @@ public class UpdateDateTools
      */
     public String getLastIndexed(Record record, String fieldSpec, String core) {
         // Update the database, then send back the last indexed date:
-        updateTracker(core, SolrIndexer.instance().getFirstFieldVal(record, fieldSpec), getLatestTransaction(record));
+        updateTracker(core, SolrIndexer.instance().getFirstFieldVal(record, fieldSpec), getLatestTransactionSeconds(record));
         return UpdateDateTracker.instance().getLastIndexed();
     }
 
@@ -21,13 +21,16 @@ package org.vufind.index;
 import java.sql.*;
 import java.time.format.DateTimeFormatter;
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * Class for managing record update dates.
  */
 public class UpdateDateTracker
 {
-    private Connection db;
+    private DatabaseManager databaseManager;
     private String core;
     private String id;
     private DateTimeFormatter iso8601 = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss'Z'");
@@ -37,32 +40,75 @@ public class UpdateDateTracker
     private Timestamp lastRecordChange;
     private Timestamp deleted;
 
-    private static ThreadLocal<UpdateDateTracker> trackerCache =
-        new ThreadLocal<UpdateDateTracker>()
+    // Native upserts: insert a new row, or update an existing one if it was
+    // deleted or its record change date moved by more than 999 ms (keeping the
+    // first indexed date unless restoring a row without one). Parameters: core,
+    // id, now, now, record change.
+    private static final String CHANGED_MYSQL =
+        "(deleted IS NOT NULL OR last_record_change IS NULL OR "
+        + "ABS(TIMESTAMPDIFF(MICROSECOND, last_record_change, VALUES(last_record_change))) > 999000)";
+    // MySQL applies the assignments in order and later conditions see earlier
+    // assignments, so the columns the condition reads are assigned last (once
+    // last_record_change is assigned, the condition only stays true for
+    // deleted rows, which is exactly when deleted must be cleared):
+    private static final String UPSERT_MYSQL =
+        "INSERT INTO change_tracker(core, id, first_indexed, last_indexed, last_record_change) "
+        + "VALUES(?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE "
+        + "first_indexed = IF(" + CHANGED_MYSQL + ", COALESCE(first_indexed, VALUES(first_indexed)), first_indexed), "
+        + "last_indexed = IF(" + CHANGED_MYSQL + ", VALUES(last_indexed), last_indexed), "
+        + "last_record_change = IF(" + CHANGED_MYSQL + ", VALUES(last_record_change), last_record_change), "
+        + "deleted = IF(" + CHANGED_MYSQL + ", NULL, deleted)";
+    // PostgreSQL only returns rows from the upsert if it wrote them, so the
+    // stored row of an unchanged record is selected in the same statement.
+    // Parameters: core, id, now, now, record change, core, id.
+    private static final String UPSERT_POSTGRESQL =
+        "WITH upsert AS ("
+        + "INSERT INTO change_tracker AS ct(core, id, first_indexed, last_indexed, last_record_change) "
+        + "VALUES(?, ?, ?, ?, ?) ON CONFLICT (core, id) DO UPDATE SET "
+        + "first_indexed = COALESCE(ct.first_indexed, EXCLUDED.first_indexed), "
+        + "last_indexed = EXCLUDED.last_indexed, "
+        + "last_record_change = EXCLUDED.last_record_change, deleted = NULL "
+        + "WHERE ct.deleted IS NOT NULL OR ct.last_record_change IS NULL OR "
+        + "ABS(EXTRACT(EPOCH FROM ct.last_record_change - EXCLUDED.last_record_change)) > 0.999 "
+        + "RETURNING first_indexed, last_indexed, last_record_change) "
+        + "SELECT first_indexed, last_indexed, last_record_change, TRUE FROM upsert "
+        + "UNION ALL SELECT first_indexed, last_indexed, last_record_change, FALSE FROM change_tracker "
+        + "WHERE core = ? AND id = ? AND NOT EXISTS (SELECT 1 FROM upsert)";
+
+    // Did the last index() call find the record unchanged (and not deleted)?
+    private boolean unchanged = false;
+
+    // One tracker per thread and configuration namespace:
+    private static ThreadLocal<Map<ConfigNamespace, UpdateDateTracker>> trackerCache =
+        new ThreadLocal<Map<ConfigNamespace, UpdateDateTracker>>()
         {
             @Override
-            protected UpdateDateTracker initialValue()
+            protected Map<ConfigNamespace, UpdateDateTracker> initialValue()
             {
-                try {
-                    return new UpdateDateTracker(DatabaseManager.instance().getConnection());
-                } catch (SQLException e) {
-                    throw new RuntimeException(e.getMessage());
-                }
+                return new HashMap<ConfigNamespace, UpdateDateTracker>();
             }
         };
 
+    /**
+     * Get the tracker for the current thread and configuration namespace.
+     */
     public static UpdateDateTracker instance()
     {
-        return trackerCache.get();
+        Map<ConfigNamespace, UpdateDateTracker> trackers = trackerCache.get();
+        ConfigNamespace namespace = ConfigNamespace.current();
+        UpdateDateTracker tracker = trackers.get(namespace);
+        if (tracker == null) {
+            tracker = new UpdateDateTracker(DatabaseManager.instance());
+            trackers.put(namespace, tracker);
+        }
+        return tracker;
     }
 
     /* Private support method: create a row in the change_tracker table.
      */
-    private void createRow(Timestamp newRecordChange) throws SQLException
+    private void createRow(Connection db, long newRecordChange) throws SQLException
     {
-        // Save new values to the object:
-        firstIndexed = lastIndexed = Timestamp.valueOf(LocalDateTime.now());
-        lastRecordChange = newRecordChange;
+        setCreated(newRecordChange);
 
         // Save new values to the database:
         try (
@@ -76,26 +122,30 @@ public class UpdateDateTracker
             insertSql.setTimestamp(3, firstIndexed);
             insertSql.setTimestamp(4, lastIndexed);
             insertSql.setTimestamp(5, lastRecordChange);
-            insertSql.executeUpdate();
+            long start = System.nanoTime();
+            int rows = insertSql.executeUpdate();
+            databaseManager.getStatistics().record(DatabaseStatistics.Operation.INSERT, start, rows);
         }
     }
 
     /* Private support method: read a row from the change_tracker table.
      */
-    private boolean readRow() throws SQLException
+    private boolean readRow(Connection db) throws SQLException
     {
         try (
             PreparedStatement selectSql = db.prepareStatement(
                 "SELECT first_indexed, last_indexed, last_record_change, deleted " +
-                "FROM change_tracker WHERE core = ? AND id = ?;",
-                ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY
+                "FROM change_tracker WHERE core = ? AND id = ?;"
             )
         ) {
             selectSql.setString(1, core);
             selectSql.setString(2, id);
+            long start = System.nanoTime();
             try (ResultSet result = selectSql.executeQuery()) {
+                boolean found = result.next();
+                databaseManager.getStatistics().record(DatabaseStatistics.Operation.SELECT, start, found ? 1 : 0);
                 // No results? Return false:
-                if (!result.first()) {
+                if (!found) {
                     return false;
                 } else {
                     // If we got this far, we have results -- load them into the object:
@@ -109,18 +159,34 @@ public class UpdateDateTracker
         return true;
     }
 
-    /* Private support method: update a row in the change_tracker table.
+    /* Private support method: save the values of a new row to the object.
+     */
+    private void setCreated(long newRecordChange)
+    {
+        firstIndexed = lastIndexed = Timestamp.valueOf(LocalDateTime.now());
+        lastRecordChange = MarcDates.toTimestamp(newRecordChange);
+        deleted = null;
+    }
+
+    /* Private support method: save the values of an updated row to the object.
      */
-    private void updateRow(Timestamp newRecordChange) throws SQLException
+    private void setUpdated(long newRecordChange)
     {
-        // Save new values to the object:
         lastIndexed = Timestamp.valueOf(LocalDateTime.now());
         // If first indexed is null, we're restoring a deleted record, so
         // we need to treat it as new -- we'll use the current time.
         if (firstIndexed == null) {
             firstIndexed = lastIndexed;
         }
-        lastRecordChange = newRecordChange;
+        lastRecordChange = MarcDates.toTimestamp(newRecordChange);
+        deleted = null;
+    }
+
+    /* Private support method: update a row in the change_tracker table.
+     */
+    private void updateRow(Connection db, long newRecordChange) throws SQLException
+    {
+        setUpdated(newRecordChange);
 
         // Save new values to the database:
         try (
@@ -136,15 +202,17 @@ public class UpdateDateTracker
             updateSql.setNull(4, java.sql.Types.NULL);
             updateSql.setString(5, core);
             updateSql.setString(6, id);
-            updateSql.executeUpdate();
+            long start = System.nanoTime();
+            int rows = updateSql.executeUpdate();
+            databaseManager.getStatistics().record(DatabaseStatistics.Operation.UPDATE, start, rows);
         }
     }
 
-    /* Constructor:
+    /* Constructor (connections are leased from the manager for each update):
      */
-    public UpdateDateTracker(Connection dbConnection) throws SQLException
+    public UpdateDateTracker(DatabaseManager manager)
     {
-        db = dbConnection;
+        databaseManager = manager;
     }
 
     /* Get the first indexed date (IMPORTANT: index() must be called before this method)
@@ -161,9 +229,25 @@ public class UpdateDateTracker
         return lastIndexed.toLocalDateTime().format(iso8601);
     }
 
+    /* Was the record unchanged since it was last indexed (same record change date,
+     * not deleted)? (IMPORTANT: index() must be called before this method)
+     */
+    public boolean isUnchanged()
+    {
+        return unchanged;
+    }
+
     /* Update the database to indicate that the record has just been received by the indexer:
      */
     public void index(String selectedCore, String selectedId, LocalDateTime recordChange) throws SQLException
+    {
+        index(selectedCore, selectedId, recordChange.toEpochSecond(ZoneOffset.UTC));
+    }
+
+    /* Update the database to indicate that the record has just been received by the indexer
+     * (with the record change date as local epoch seconds, see MarcDates):
+     */
+    public void index(String selectedCore, String selectedId, long newRecordChange) throws SQLException
     {
         // If core and ID match the values currently in the class, we have already
         // indexed the record and do not need to repeat ourselves!
@@ -175,28 +259,233 @@ public class UpdateDateTracker
         // the current core/ID pair we are operating on:
         core = selectedCore;
         id = selectedId;
+        unchanged = false;
+
+        try {
+            ChangeTrackerPreload preload = databaseManager.getTrackerPreload(core);
+            // (The journal exists to keep the database out of the indexing
+            // threads, so it takes precedence over native upserts.)
+            String upsertPlatform = preload == null && databaseManager.getTrackerJournal() == null
+                ? databaseManager.getTrackerUpsertPlatform() : null;
+            ChangeTrackerSink sink = upsertPlatform == null ? databaseManager.getTrackerSink() : null;
+            ChangeTrackerIdFilter idFilter = preload == null && upsertPlatform == null
+                ? databaseManager.getTrackerIdFilter(core) : null;
+            boolean written;
+            if (upsertPlatform != null) {
+                written = indexUpsert(upsertPlatform, newRecordChange);
+            } else if (sink != null) {
+                written = indexQueued(sink, preload, idFilter, newRecordChange);
+            } else {
+                written = indexRow(preload, idFilter, newRecordChange);
+            }
+            if (written && preload != null) {
+                preload.put(currentRow());
+            }
+            if (written && idFilter != null) {
+                idFilter.add(id);
+            }
+            unchanged = !written;
+        } catch (SQLException e) {
+            // Make sure a retry of the same record is not skipped:
+            core = id = null;
+            throw e;
+        }
+    }
+
+    /* Private support method: load the stored row of the current record from
+     * the preloaded rows if possible, otherwise from the database (the replica
+     * if one is configured) unless the id filter shows that there is none.
+     */
+    private boolean readStoredRow(ChangeTrackerPreload preload, ChangeTrackerIdFilter idFilter)
+        throws SQLException
+    {
+        if (preload != null) {
+            ChangeTrackerRow row = preload.get(id);
+            if (row != null) {
+                load(row);
+                return true;
+            } else if (preload.isComplete()) {
+                return false;
+            }
+        }
+        if (idFilter != null && !idFilter.mightContain(id)) {
+            return false;
+        }
+        try (Connection db = databaseManager.getTrackerReadConnection(core, id)) {
+            return readRow(db);
+        }
+    }
 
-        // Convert incoming LocalDateTime to a Timestamp:
-        Timestamp newRecordChange = Timestamp.valueOf(recordChange);
+    /* Private support method: create or update the row of the current record.
+     * Connections are leased for this record only, so that the pool can be
+     * smaller than the number of indexer threads.
+     * Returns true if the row was written.
+     */
+    private boolean indexRow(ChangeTrackerPreload preload, ChangeTrackerIdFilter idFilter,
+        long newRecordChange
+    ) throws SQLException {
+        boolean found = readStoredRow(preload, idFilter);
+        // No row?  Create one!  Row already exists?  See if it needs to be updated:
+        if (!found || isChanged(newRecordChange)) {
+            try (Connection db = databaseManager.getTrackerConnection()) {
+                if (!found) {
+                    try {
+                        createRow(db, newRecordChange);
+                    } catch (SQLException e) {
+                        // The id filter does not know rows created by other
+                        // processes since it was loaded; if we hit one of
+                        // those, handle it like a row we had read:
+                        if (idFilter == null || !isConstraintViolation(e) || !readRow(db)) {
+                            throw e;
+                        }
+                        if (!isChanged(newRecordChange)) {
+                            return false;
+                        }
+                        updateRow(db, newRecordChange);
+                    }
+                } else {
+                    updateRow(db, newRecordChange);
+                }
+            }
+            databaseManager.recordTrackerWrite(core, id);
+            return true;
+        }
+        return false;
+    }
 
-        // No row?  Create one!
-        if (!readRow()) {
-            createRow(newRecordChange);
-        // Row already exists?  See if it needs to be updated:
+    /* Private support method: read the row of the current record (from the
+     * write-behind queue if it has not been written yet) and hand its changes
+     * to the write-behind queue or journal. Returns true if the row was queued.
+     */
+    private boolean indexQueued(ChangeTrackerSink sink, ChangeTrackerPreload preload,
+        ChangeTrackerIdFilter idFilter, long newRecordChange
+    ) throws SQLException {
+        ChangeTrackerRow queued = sink.getPending(core, id);
+        boolean found;
+        if (queued != null) {
+            load(queued);
+            found = true;
         } else {
-            // Are we restoring a previously deleted record, or was the stored
-            // record change date before current record change date?  Either way,
-            // we need to update the table!
-            //
-            // Note that we check for a time difference of at least one second in
-            // order to count as a change.  Because dates are stored with second
-            // precision, some of the date conversions have been known to create
-            // minor inaccuracies in the millisecond range, which used to cause
-            // false positives.
-            if (deleted != null ||
-                Math.abs(lastRecordChange.getTime() - newRecordChange.getTime()) > 999) {
-                updateRow(newRecordChange);
+            found = readStoredRow(preload, idFilter);
+        }
+        if (!found) {
+            setCreated(newRecordChange);
+        } else if (isChanged(newRecordChange)) {
+            setUpdated(newRecordChange);
+        } else {
+            return false;
+        }
+        sink.add(currentRow());
+        return true;
+    }
+
+    /* Private support method: create or update the row of the current record
+     * with the platform's native upsert, which makes the new/changed/unchanged
+     * decision in the database (so two threads indexing the same record cannot
+     * race) and returns the stored dates. PostgreSQL needs one round trip;
+     * MySQL has no RETURNING clause, so the dates are read back afterwards.
+     * Returns true if the row was written.
+     */
+    private boolean indexUpsert(String platform, long newRecordChange) throws SQLException
+    {
+        // Whole seconds, as stored:
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now().withNano(0));
+        DatabaseStatistics statistics = databaseManager.getStatistics();
+        boolean written;
+        try (Connection db = databaseManager.getTrackerConnection()) {
+            if (platform.equals("postgresql")) {
+                try (PreparedStatement upsertSql = db.prepareStatement(UPSERT_POSTGRESQL)) {
+                    setUpsertParameters(upsertSql, now, newRecordChange);
+                    upsertSql.setString(6, core);
+                    upsertSql.setString(7, id);
+                    long start = System.nanoTime();
+                    try (ResultSet result = upsertSql.executeQuery()) {
+                        if (!result.next()) {
+                            throw new SQLException("Upsert of change_tracker row " + core + ":" + id + " returned no row");
+                        }
+                        firstIndexed = result.getTimestamp(1);
+                        lastIndexed = result.getTimestamp(2);
+                        lastRecordChange = result.getTimestamp(3);
+                        written = result.getBoolean(4);
+                    }
+                    statistics.record(DatabaseStatistics.Operation.UPSERT, start, written ? 1 : 0);
+                }
+            } else {
+                try (PreparedStatement upsertSql = db.prepareStatement(UPSERT_MYSQL)) {
+                    setUpsertParameters(upsertSql, now, newRecordChange);
+                    long start = System.nanoTime();
+                    // (Affected rows, see DatabaseManager: 1 if inserted, 2 if
+                    // updated, 0 if unchanged.)
+                    int rows = upsertSql.executeUpdate();
+                    statistics.record(DatabaseStatistics.Operation.UPSERT, start, rows > 0 ? 1 : 0);
+                    written = rows > 0;
+                }
+                if (!readRow(db)) {
+                    throw new SQLException("Upserted change_tracker row " + core + ":" + id + " not found");
+                }
             }
         }
+        deleted = null;
+        if (written) {
+            databaseManager.recordTrackerWrite(core, id);
+        }
+        return written;
+    }
+
+    /* Private support method: set the first five parameters of an upsert.
+     */
+    private void setUpsertParameters(PreparedStatement upsertSql, Timestamp now, long newRecordChange)
+        throws SQLException
+    {
+        upsertSql.setString(1, core);
+        upsertSql.setString(2, id);
+        upsertSql.setTimestamp(3, now);
+        upsertSql.setTimestamp(4, now);
+        upsertSql.setTimestamp(5, MarcDates.toTimestamp(newRecordChange));
+    }
+
+    /* Private support method: is an error a constraint violation (such as a
+     * duplicate key)?
+     */
+    private static boolean isConstraintViolation(SQLException e)
+    {
+        return e instanceof SQLIntegrityConstraintViolationException
+            || e.getSQLState() != null && e.getSQLState().startsWith("23");
+    }
+
+    /* Private support method: load a row into the object.
+     */
+    private void load(ChangeTrackerRow row)
+    {
+        firstIndexed = row.firstIndexed;
+        lastIndexed = row.lastIndexed;
+        lastRecordChange = row.lastRecordChange;
+        deleted = row.deleted;
+    }
+
+    /* Private support method: get the values of the object as a row.
+     */
+    private ChangeTrackerRow currentRow()
+    {
+        return new ChangeTrackerRow(core, id, firstIndexed, lastIndexed, lastRecordChange, deleted);
+    }
+
+    /* Private support method: does the loaded row need to be updated?
+     */
+    private boolean isChanged(long newRecordChange)
+    {
+        // Are we restoring a previously deleted record, or was the stored
+        // record change date before current record change date?  Either way,
+        // we need to update the table!
+        //
+        // Note that we compare whole seconds, rounding the stored date.  Because
+        // dates are stored with second precision, some of the date conversions
+        // have been known to create minor inaccuracies in the millisecond
+        // range, which used to cause false positives.  Local times that do not
+        // exist (in a daylight saving gap) are stored shifted by an hour, so a
+        // mismatch is confirmed against the Timestamp the date would be stored as.
+        return deleted != null || lastRecordChange == null ||
+            MarcDates.toEpochSecond(lastRecordChange) != newRecordChange &&
+            Math.abs(lastRecordChange.getTime() - MarcDates.toTimestamp(newRecordChange).getTime()) > 999;
     }
 }
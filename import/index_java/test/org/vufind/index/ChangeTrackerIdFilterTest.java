@@ -0,0 +1,109 @@
+package org.vufind.index;
+/**
+ * ChangeTrackerIdFilter tests.
+ *
+ * Copyright (C) Villanova University 2026.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+/**
+ * ChangeTrackerIdFilter tests.
+ *
+ * Without the filter every record's row was read before writing it; the
+ * filter may only skip that read for ids it has never seen, so it must never
+ * report an added id as absent.
+ */
+public class ChangeTrackerIdFilterTest
+{
+    /**
+     * Count the ids in a range the filter might contain.
+     */
+    private static int countMightContain(ChangeTrackerIdFilter filter, String prefix, int from, int to)
+    {
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            if (filter.mightContain(prefix + i)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Every added id is found, and about 1% (at most 2%) of other ids are
+     * false positives.
+     */
+    @Test
+    public void testExpectedSize()
+    {
+        ChangeTrackerIdFilter filter = new ChangeTrackerIdFilter(1000000);
+        assertFalse(filter.mightContain("in.0"));
+        for (int i = 0; i < 1000000; i++) {
+            filter.add("in." + i);
+        }
+        assertEquals(1000000, countMightContain(filter, "in.", 0, 1000000));
+        int falsePositives = countMightContain(filter, "out.", 0, 1000000);
+        assertTrue("False positives: " + falsePositives, falsePositives < 20000);
+    }
+
+    /**
+     * A filter given far more ids than expected gets more false positives but
+     * still finds every added id.
+     */
+    @Test
+    public void testOverfilled()
+    {
+        ChangeTrackerIdFilter filter = new ChangeTrackerIdFilter(0);
+        for (int i = 0; i < 200000; i++) {
+            filter.add("id" + i);
+        }
+        assertEquals(200000, countMightContain(filter, "id", 0, 200000));
+    }
+
+    /**
+     * Ids added concurrently (including to the same words of the filter) are
+     * all found.
+     */
+    @Test
+    public void testConcurrentAdds() throws InterruptedException
+    {
+        ChangeTrackerIdFilter filter = new ChangeTrackerIdFilter(10000);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            String prefix = "t" + t + ".";
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 20000; i++) {
+                    filter.add(prefix + i);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (int t = 0; t < 8; t++) {
+            assertEquals(20000, countMightContain(filter, "t" + t + ".", 0, 20000));
+        }
+    }
+}
@@ -0,0 +1,383 @@
+package org.vufind.index;
+/**
+ * ChangeTrackerJournal tests.
+ *
+ * Copyright (C) Villanova University 2026.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * ChangeTrackerJournal tests.
+ *
+ * The journal is applied to an in-memory change_tracker table behind a fake
+ * JDBC connection, which understands the statements ChangeTrackerRow.upsert()
+ * sends.
+ */
+public class ChangeTrackerJournalTest
+{
+    private File file;
+    private Map<String, Object[]> table;
+    private DatabaseManager databaseManager;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        file = File.createTempFile("ChangeTrackerJournalTest", ".journal");
+        table = new HashMap<>();
+        databaseManager = new DatabaseManager(null) {
+            @Override
+            public Connection getTrackerConnection()
+            {
+                return connection();
+            }
+        };
+    }
+
+    @After
+    public void tearDown()
+    {
+        file.delete();
+    }
+
+    /**
+     * Create a fake connection to the in-memory table.
+     */
+    private Connection connection()
+    {
+        return (Connection)Proxy.newProxyInstance(
+            getClass().getClassLoader(), new Class<?>[] { Connection.class },
+            (proxy, method, args) -> {
+                switch (method.getName()) {
+                case "prepareStatement":
+                    return statement((String)args[0]);
+                case "getAutoCommit":
+                case "isValid":
+                    return true;
+                case "isClosed":
+                    return false;
+                default:
+                    return null;
+                }
+            }
+        );
+    }
+
+    /**
+     * Create a fake statement: UPDATE and INSERT batches of ChangeTrackerRow,
+     * and its IN (...) select.
+     * @param sql statement
+     */
+    private PreparedStatement statement(String sql)
+    {
+        Map<Integer, Object> parameters = new HashMap<>();
+        List<Map<Integer, Object>> batch = new ArrayList<>();
+        return (PreparedStatement)Proxy.newProxyInstance(
+            getClass().getClassLoader(), new Class<?>[] { PreparedStatement.class },
+            (proxy, method, args) -> {
+                switch (method.getName()) {
+                case "setString":
+                case "setTimestamp":
+                    parameters.put((Integer)args[0], args[1]);
+                    return null;
+                case "addBatch":
+                    batch.add(new HashMap<>(parameters));
+                    parameters.clear();
+                    return null;
+                case "executeBatch":
+                    int[] counts = new int[batch.size()];
+                    for (int i = 0; i < counts.length; i++) {
+                        counts[i] = execute(sql, batch.get(i));
+                    }
+                    batch.clear();
+                    return counts;
+                case "executeQuery":
+                    return select(parameters);
+                default:
+                    return null;
+                }
+            }
+        );
+    }
+
+    /**
+     * Apply a batched UPDATE (in the column order of ChangeTrackerRow.update())
+     * or INSERT to the table.
+     * @return update count
+     */
+    private int execute(String sql, Map<Integer, Object> p) throws SQLException
+    {
+        if (sql.startsWith("UPDATE")) {
+            Object[] row = table.get(p.get(5) + "|" + p.get(6));
+            if (row == null) {
+                return 0;
+            }
+            row[2] = row[2] != null ? row[2] : p.get(1);
+            row[3] = p.get(2);
+            row[4] = p.get(3);
+            row[5] = p.get(4);
+            return 1;
+        }
+        String key = p.get(1) + "|" + p.get(2);
+        if (table.containsKey(key)) {
+            throw new SQLException("Duplicate key " + key);
+        }
+        table.put(key, new Object[] { p.get(1), p.get(2), p.get(3), p.get(4), p.get(5), p.get(6) });
+        return 1;
+    }
+
+    /**
+     * Run the IN (...) select of ChangeTrackerRow.select() (parameter 1 is the
+     * core, the rest are ids).
+     */
+    private ResultSet select(Map<Integer, Object> parameters)
+    {
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 2; parameters.containsKey(i); i++) {
+            Object[] row = table.get(parameters.get(1) + "|" + parameters.get(i));
+            if (row != null && !rows.contains(row)) {
+                rows.add(row);
+            }
+        }
+        int[] position = { -1 };
+        return (ResultSet)Proxy.newProxyInstance(
+            getClass().getClassLoader(), new Class<?>[] { ResultSet.class },
+            (proxy, method, args) -> {
+                switch (method.getName()) {
+                case "next":
+                    return ++position[0] < rows.size();
+                case "getString":
+                case "getTimestamp":
+                    return rows.get(position[0])[(Integer)args[0] - 1];
+                default:
+                    return null;
+                }
+            }
+        );
+    }
+
+    private static Timestamp date(int day)
+    {
+        return new Timestamp(1577836800000L + day * 86400000L);
+    }
+
+    private static ChangeTrackerRow row(String id, int day)
+    {
+        return new ChangeTrackerRow("biblio", id, date(0), date(day), date(day - 1), null);
+    }
+
+    /**
+     * Get a row of the table as a ChangeTrackerRow (null if missing).
+     */
+    private ChangeTrackerRow stored(String core, String id)
+    {
+        Object[] row = table.get(core + "|" + id);
+        return row == null ? null : new ChangeTrackerRow(
+            (String)row[0], (String)row[1], (Timestamp)row[2], (Timestamp)row[3], (Timestamp)row[4], (Timestamp)row[5]
+        );
+    }
+
+    private static void assertRow(ChangeTrackerRow expected, ChangeTrackerRow actual)
+    {
+        assertEquals(expected.core, actual.core);
+        assertEquals(expected.id, actual.id);
+        assertEquals(expected.firstIndexed, actual.firstIndexed);
+        assertEquals(expected.lastIndexed, actual.lastIndexed);
+        assertEquals(expected.lastRecordChange, actual.lastRecordChange);
+        assertEquals(expected.deleted, actual.deleted);
+    }
+
+    /**
+     * Size of the entry of a row in the journal (length, CRC and data).
+     */
+    private static int entryBytes(ChangeTrackerRow row)
+    {
+        return 8 + 2 + row.core.getBytes(StandardCharsets.UTF_8).length
+            + 2 + row.id.getBytes(StandardCharsets.UTF_8).length + 32;
+    }
+
+    /**
+     * Write rows to a new journal and close it.
+     */
+    private void write(List<ChangeTrackerRow> rows) throws IOException, SQLException
+    {
+        ChangeTrackerJournal journal = new ChangeTrackerJournal(file);
+        for (ChangeTrackerRow row : rows) {
+            journal.add(row);
+        }
+        journal.close();
+    }
+
+    /**
+     * The latest entry of each record is applied, null dates and non-ASCII
+     * ids survive, and applying the journal again gives the same table.
+     */
+    @Test
+    public void testApplyTwice() throws IOException, SQLException
+    {
+        List<ChangeTrackerRow> rows = new ArrayList<>();
+        for (int i = 0; i < 2500; i++) {
+            rows.add(row("r" + (i % 1000), 1 + i / 1000));
+        }
+        ChangeTrackerRow deleted = new ChangeTrackerRow("authority", "caf\u00e9 \u2713", null, null, null, date(9));
+        rows.add(deleted);
+        write(rows);
+
+        assertEquals(2501, ChangeTrackerJournal.apply(file, databaseManager));
+        assertEquals(1001, table.size());
+        assertRow(row("r0", 3), stored("biblio", "r0"));
+        assertRow(row("r999", 2), stored("biblio", "r999"));
+        assertRow(deleted, stored("authority", deleted.id));
+
+        Map<String, List<Object>> before = new HashMap<>();
+        for (Map.Entry<String, Object[]> entry : table.entrySet()) {
+            before.put(entry.getKey(), Arrays.asList(entry.getValue().clone()));
+        }
+        assertEquals(2501, ChangeTrackerJournal.apply(file, databaseManager));
+        assertEquals(before.size(), table.size());
+        for (Map.Entry<String, Object[]> entry : table.entrySet()) {
+            assertEquals(before.get(entry.getKey()), Arrays.asList(entry.getValue()));
+        }
+    }
+
+    /**
+     * A damaged entry stops apply(): the entries before it are applied, it and
+     * everything after it are not.
+     */
+    @Test
+    public void testDamagedEntry() throws IOException, SQLException
+    {
+        List<ChangeTrackerRow> rows = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            rows.add(row(String.format("r%03d", i), 1));
+        }
+        write(rows);
+        try (RandomAccessFile damaged = new RandomAccessFile(file, "rw")) {
+            // Flip a byte in the id of entry 40:
+            long offset = 40L * entryBytes(rows.get(0)) + 8 + 2 + 6 + 2 + 1;
+            damaged.seek(offset);
+            int value = damaged.read();
+            damaged.seek(offset);
+            damaged.write(value ^ 0x20);
+        }
+
+        assertEquals(40, ChangeTrackerJournal.apply(file, databaseManager));
+        assertEquals(40, table.size());
+        assertRow(rows.get(39), stored("biblio", "r039"));
+        assertNull(stored("biblio", "r040"));
+        assertNull(stored("biblio", "r041"));
+    }
+
+    /**
+     * Torn writes stop apply() at the incomplete entry: an entry whose length
+     * was never written, and a file cut off in the middle of an entry.
+     */
+    @Test
+    public void testTornWrites() throws IOException, SQLException
+    {
+        List<ChangeTrackerRow> rows = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            rows.add(row(String.format("r%03d", i), 1));
+        }
+        int entry = entryBytes(rows.get(0));
+        write(rows);
+        try (RandomAccessFile torn = new RandomAccessFile(file, "rw")) {
+            torn.seek(60L * entry);
+            torn.writeInt(0);
+        }
+        assertEquals(60, ChangeTrackerJournal.apply(file, databaseManager));
+        assertEquals(60, table.size());
+
+        table.clear();
+        write(rows);
+        try (RandomAccessFile torn = new RandomAccessFile(file, "rw")) {
+            torn.setLength(20L * entry + entry / 2);
+        }
+        assertEquals(20, ChangeTrackerJournal.apply(file, databaseManager));
+        assertEquals(20, table.size());
+        assertNull(stored("biblio", "r020"));
+    }
+
+    /**
+     * Entries continue across regions of the file, and damage in a later
+     * region keeps the earlier regions.
+     */
+    @Test
+    public void testRegions() throws IOException, SQLException
+    {
+        List<ChangeTrackerRow> rows = new ArrayList<>();
+        for (int i = 0; i < 300000; i++) {
+            rows.add(row(String.format("r%06d", i), 1));
+        }
+        int entry = entryBytes(rows.get(0));
+        int perRegion = ((16 << 20) - 4) / entry;
+        write(rows);
+        try (RandomAccessFile damaged = new RandomAccessFile(file, "rw")) {
+            damaged.seek((16 << 20) + 10L * entry + 20);
+            damaged.write(0xff);
+        }
+
+        assertEquals(perRegion + 10, ChangeTrackerJournal.apply(file, databaseManager));
+        assertRow(rows.get(perRegion + 9), stored("biblio", rows.get(perRegion + 9).id));
+        assertNull(stored("biblio", rows.get(perRegion + 10).id));
+    }
+
+    /**
+     * getPending() returns the latest row of each record taken, also after
+     * the offset index has grown, and nothing once the journal is closed.
+     */
+    @Test
+    public void testGetPending() throws IOException, SQLException
+    {
+        ChangeTrackerJournal journal = new ChangeTrackerJournal(file);
+        for (int i = 0; i < 200000; i++) {
+            journal.add(row("r" + i, 1));
+        }
+        journal.add(row("r7", 2));
+        journal.add(new ChangeTrackerRow("authority", "r7", null, date(3), null, null));
+
+        assertRow(row("r7", 2), journal.getPending("biblio", "r7"));
+        assertRow(row("r199999", 1), journal.getPending("biblio", "r199999"));
+        assertRow(
+            new ChangeTrackerRow("authority", "r7", null, date(3), null, null), journal.getPending("authority", "r7")
+        );
+        assertNull(journal.getPending("biblio", "r200000"));
+        assertNull(journal.getPending("authority", "r8"));
+
+        journal.close();
+        assertNull(journal.getPending("biblio", "r7"));
+    }
+}
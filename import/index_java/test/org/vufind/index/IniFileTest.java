@@ -0,0 +1,185 @@
+package org.vufind.index;
+/**
+ * IniFile tests.
+ *
+ * Copyright (C) Villanova University 2026.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+/**
+ * IniFile tests.
+ *
+ * The expected values are those the ini4j library (used by the indexer before
+ * IniFile) returns for the same content, unless a test says otherwise.
+ */
+public class IniFileTest
+{
+    private static IniFile parse(String content) throws IOException
+    {
+        return IniFile.parse(new BufferedReader(new StringReader(content)));
+    }
+
+    /**
+     * Comment lines are skipped; semicolons in values are kept in the raw value
+     * and stripped (outside of quotes) from the sanitized one.
+     */
+    @Test
+    public void testComments() throws IOException
+    {
+        IniFile ini = parse(
+            "; comment\n# other comment\n[A]\n  ; indented comment\nkey = value ; trailing\n"
+            + "hash = a # b\nquoted = \"quoted; value\"\nwrapped = \"wrapped\"\nempty =\n"
+        );
+        assertEquals("value ; trailing", ini.get("A", "key"));
+        assertEquals("value", ini.getSection("A").get("key"));
+        assertEquals("a # b", ini.get("A", "hash"));
+        assertEquals("\"quoted; value\"", ini.get("A", "quoted"));
+        assertEquals("quoted; value", ini.getSection("A").get("quoted"));
+        assertEquals("\"wrapped\"", ini.get("A", "wrapped"));
+        assertEquals("wrapped", ini.getSection("A").get("wrapped"));
+        assertEquals("", ini.get("A", "empty"));
+        assertEquals(5, ini.getRawSection("A").size());
+    }
+
+    /**
+     * A setting is split at its first "=" or ":", and keys, values and section
+     * names are trimmed.
+     */
+    @Test
+    public void testOperators() throws IOException
+    {
+        IniFile ini = parse("[ A ]\na = b:c\nd : e = f\n  spaced   =   out  \n");
+        assertEquals("b:c", ini.get("A", "a"));
+        assertEquals("e = f", ini.get("A", "d"));
+        assertEquals("out", ini.get("A", "spaced"));
+    }
+
+    /**
+     * Backslash escapes are decoded.
+     */
+    @Test
+    public void testEscapes() throws IOException
+    {
+        IniFile ini = parse(
+            "[A]\ntab = a\\tb\nnewline = a\\nb\nslash = c:\\\\path\\\\dir\nunicode = caf\\u00e9\n"
+            + "quote = say \\\"hi\\\"\ntrailing = a\\\\\n"
+        );
+        assertEquals("a\tb", ini.get("A", "tab"));
+        assertEquals("a\nb", ini.get("A", "newline"));
+        assertEquals("c:\\path\\dir", ini.get("A", "slash"));
+        assertEquals("caf\u00e9", ini.get("A", "unicode"));
+        assertEquals("say \"hi\"", ini.get("A", "quote"));
+        assertEquals("a\\", ini.get("A", "trailing"));
+    }
+
+    /**
+     * A line ending in a single backslash continues on the next (trimmed) line;
+     * a setting still continued at the end of the file is dropped.
+     */
+    @Test
+    public void testContinuationLines() throws IOException
+    {
+        IniFile ini = parse("[A]\nlong = first \\\n  second \\\n third\nend = x\nlast = a \\\n");
+        assertEquals("first second third", ini.get("A", "long"));
+        assertEquals("x", ini.get("A", "end"));
+        assertNull(ini.get("A", "last"));
+    }
+
+    /**
+     * A repeated key keeps its last value, and a repeated section continues
+     * the earlier one.
+     */
+    @Test
+    public void testDuplicates() throws IOException
+    {
+        IniFile ini = parse("[A]\nlist[] = one\nlist[] = two\nx = 1\n[B]\ny = 1\n[A]\nx = 2\nz = 3\n");
+        assertEquals("two", ini.get("A", "list[]"));
+        assertEquals("2", ini.get("A", "x"));
+        assertEquals("3", ini.get("A", "z"));
+        assertEquals("1", ini.get("B", "y"));
+        List<String> names = new ArrayList<>();
+        for (String name : ini.getSectionNames()) {
+            names.add(name);
+        }
+        assertEquals(Arrays.asList("A", "B"), names);
+    }
+
+    /**
+     * Settings outside of a section, lines without an operator and empty keys
+     * are errors.
+     */
+    @Test
+    public void testParseErrors()
+    {
+        for (String content : new String[] { "key = value\n[A]\n", "[A]\nno operator\n", "[A]\n= value\n" }) {
+            try {
+                parse(content);
+                fail("No error for " + content);
+            } catch (IOException e) {
+                // Expected
+            }
+        }
+    }
+
+    /**
+     * Files are read as UTF-8, and a leading byte order mark is skipped. (ini4j
+     * read files in the platform charset and rejected a byte order mark.)
+     */
+    @Test
+    public void testUtf8File() throws IOException
+    {
+        File file = File.createTempFile("IniFileTest", ".ini");
+        try {
+            Files.write(file.toPath(), "\uFEFF[A]\nname = Z\u00fcrich \u2713\n".getBytes(StandardCharsets.UTF_8));
+            assertEquals("Z\u00fcrich \u2713", IniFile.load(file).get("A", "name"));
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Every .ini file shipped in config/vufind parses (when the tests run from
+     * a VuFind checkout).
+     */
+    @Test
+    public void testShippedConfiguration() throws IOException
+    {
+        String home = System.getenv("VUFIND_HOME");
+        File[] files = home == null ? null : new File(home, "config/vufind").listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.getName().endsWith(".ini")) {
+                IniFile.load(file);
+            }
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package org.vufind.index;
+/**
+ * MarcDates tests.
+ *
+ * Copyright (C) Villanova University 2026.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+import static org.junit.Assert.assertEquals;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * MarcDates tests.
+ *
+ * Each parser is compared with the DateTimeFormatter code it replaced in
+ * UpdateDateTools, which returned "second 0" for anything it could not parse.
+ */
+public class MarcDatesTest
+{
+    private static final DateTimeFormatter marc005date = DateTimeFormatter.ofPattern("yyyyMMddHHmmss.S");
+    private static final DateTimeFormatter marc008date = DateTimeFormatter.ofPattern("yyMMdd");
+
+    /**
+     * The 005 parsing of the old UpdateDateTools, as local epoch seconds.
+     */
+    private static long old005(String input)
+    {
+        try {
+            return LocalDateTime.parse(input == null ? "null" : input, marc005date).toEpochSecond(ZoneOffset.UTC);
+        } catch (DateTimeParseException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * The 008 parsing of the old UpdateDateTools, as local epoch seconds.
+     */
+    private static long old008(String input)
+    {
+        if (input == null || input.length() < 6) {
+            input = "null";
+        }
+        try {
+            return LocalDate.parse(input.substring(0, 6), marc008date).atStartOfDay().toEpochSecond(ZoneOffset.UTC);
+        } catch (StringIndexOutOfBoundsException | DateTimeParseException e) {
+            return 0;
+        }
+    }
+
+    private static long new005(String input)
+    {
+        long seconds = MarcDates.parse005(input);
+        return seconds == MarcDates.INVALID ? 0 : seconds;
+    }
+
+    private static long new008(String input)
+    {
+        long seconds = MarcDates.parse008(input);
+        return seconds == MarcDates.INVALID ? 0 : seconds;
+    }
+
+    /**
+     * Hand-picked 005 values: leap days, days past the end of the month, end
+     * of day, out of range fields, wrong lengths and stray characters.
+     */
+    @Test
+    public void test005EdgeCases()
+    {
+        String[] values = {
+            "20240229123456.7", "20230229123456.0", "20230431000000.0", "20230432000000.0",
+            "19991231240000.0", "19991231240000.1", "19991231240100.0", "19991231250000.0",
+            "20200101006000.0", "20200101000060.0", "20201301000000.0", "20200001000000.0",
+            "20200100000000.0", "00000101000000.0", "00010101000000.0", "99991231235959.9",
+            "18991231235959.0", "19700101000000.0", "19691231235959.0", "20200101000000",
+            "20200101000000.", "20200101000000.12", "20200101000000,0", "2020010100000.0",
+            "2020-101000000.0", "+0200101000000.0", "20200101 00000.0", "20200101000000.x",
+            "", "null", null, "\uFF12\uFF10\uFF12\uFF100101000000.0"
+        };
+        for (String value : values) {
+            assertEquals(value, old005(value), new005(value));
+        }
+        assertEquals(MarcDates.INVALID, MarcDates.parse005("20200101000000"));
+        assertEquals(
+            LocalDateTime.of(2000, 1, 1, 0, 0).toEpochSecond(ZoneOffset.UTC),
+            MarcDates.parse005("19991231240000.0")
+        );
+    }
+
+    /**
+     * Random 005 values, mostly digits in plausible ranges.
+     */
+    @Test
+    public void test005Random()
+    {
+        Random random = new Random(5);
+        StringBuilder value = new StringBuilder();
+        for (int i = 0; i < 200000; i++) {
+            value.setLength(0);
+            value.append(String.format(
+                "%04d%02d%02d%02d%02d%02d.%d", random.nextInt(10000), random.nextInt(14), random.nextInt(33),
+                random.nextInt(26), random.nextInt(62), random.nextInt(62), random.nextInt(10)
+            ));
+            if (random.nextInt(10) == 0) {
+                value.setCharAt(random.nextInt(value.length()), "0123456789.+- xT".charAt(random.nextInt(16)));
+            }
+            String input = value.toString();
+            assertEquals(input, old005(input), new005(input));
+        }
+    }
+
+    /**
+     * Every yymmdd of the 008 with months 00-13 and days 00-32, followed by
+     * the rest of the field or nothing.
+     */
+    @Test
+    public void test008AllDates()
+    {
+        for (int year = 0; year < 100; year++) {
+            for (int month = 0; month < 14; month++) {
+                for (int day = 0; day < 33; day++) {
+                    String date = String.format("%02d%02d%02d", year, month, day);
+                    assertEquals(date, old008(date), new008(date));
+                    String field = date + "s2020    pau           000 0 eng d";
+                    assertEquals(field, old008(field), new008(field));
+                }
+            }
+        }
+    }
+
+    /**
+     * Short, null and non-numeric 008 values.
+     */
+    @Test
+    public void test008EdgeCases()
+    {
+        String[] values = {null, "", "20010", "2001-1", "-10101", "+10101", " 10101", "2001 1", "a00101", "200101"};
+        for (String value : values) {
+            assertEquals(value, old008(value), new008(value));
+        }
+        assertEquals(LocalDate.of(2099, 12, 31).toEpochDay() * 86400, MarcDates.parse008("991231"));
+    }
+
+    /**
+     * Timestamp conversion matches Timestamp.valueOf() and toLocalDateTime()
+     * in the default time zone, including around daylight saving changes
+     * (run with -Duser.timezone=America/New_York or similar to exercise
+     * those).
+     */
+    @Test
+    public void testTimestamps()
+    {
+        long start = LocalDateTime.of(2020, 1, 1, 0, 0).toEpochSecond(ZoneOffset.UTC);
+        for (long seconds = start; seconds < start + 366 * 86400L; seconds += 900) {
+            Timestamp date = MarcDates.toTimestamp(seconds);
+            assertEquals(Timestamp.valueOf(LocalDateTime.ofEpochSecond(seconds, 0, ZoneOffset.UTC)), date);
+            assertEquals(date.toLocalDateTime().toEpochSecond(ZoneOffset.UTC), MarcDates.toEpochSecond(date));
+        }
+        Timestamp date = Timestamp.valueOf(LocalDateTime.of(1969, 12, 31, 23, 59, 59, 600000000));
+        assertEquals(
+            LocalDateTime.of(1970, 1, 1, 0, 0).toEpochSecond(ZoneOffset.UTC), MarcDates.toEpochSecond(date)
+        );
+    }
+}
@@ -127,4 +127,68 @@ final class ChangeTrackerTest extends \PHPUnit\Framework\TestCase
         // Clean up after ourselves:
         $tracker->delete(['core' => $core]);
     }
+
+    /**
+     * Test that the indexer's bulk deletion tool creates the same rows as
+     * markDeleted().
+     *
+     * @return void
+     */
+    public function testBulkDeletionMatchesMarkDeleted()
+    {
+        $importDir = APPLICATION_PATH . '/import';
+        $classDir = $importDir . '/index_java/bin';
+        if (!file_exists($classDir . '/org/vufind/index/ChangeTrackerDeletions.class')) {
+            $this->markTestSkipped('Indexer classes not compiled.');
+        }
+        $core = 'testCore';
+        $tracker = $this->getTable(ChangeTracker::class);
+
+        // Delete one unknown record in PHP and another with the Java tool:
+        $tracker->markDeleted($core, 'test1');
+        $idFile = tempnam(sys_get_temp_dir(), 'ids');
+        file_put_contents($idFile, "test2\n");
+        $classPath = implode(
+            PATH_SEPARATOR,
+            ['solrmarc_core_3.5.jar', 'lib/*', 'lib_local/*', 'index_java/bin']
+        );
+        $command = 'cd ' . escapeshellarg($importDir) . ' && java -cp '
+            . escapeshellarg($classPath)
+            . ' org.vufind.index.ChangeTrackerDeletions '
+            . escapeshellarg($idFile) . ' ' . escapeshellarg($core) . ' 2>&1';
+        exec($command, $output, $status);
+        $this->assertEquals(0, $status, implode("\n", $output));
+
+        // Both rows should look the same, with dates in UTC:
+        $php = $tracker->retrieve($core, 'test1');
+        $java = $tracker->retrieve($core, 'test2');
+        $this->assertIsObject($php);
+        $this->assertIsObject($java);
+        foreach ([$php, $java] as $row) {
+            $this->assertEmpty($row->last_record_change);
+            $this->assertEquals($row->first_indexed, $row->last_indexed);
+            $this->assertLessThanOrEqual(
+                1,
+                strtotime($row->deleted) - strtotime($row->first_indexed)
+            );
+        }
+        foreach (['first_indexed', 'last_indexed', 'deleted'] as $column) {
+            // allow for the time taken to start the tool:
+            $this->assertLessThan(
+                60,
+                abs(strtotime($java->$column) - strtotime($php->$column)),
+                $column
+            );
+        }
+
+        // Running the tool again should change nothing:
+        exec($command, $output, $status);
+        unlink($idFile);
+        $this->assertEquals(0, $status, implode("\n", $output));
+        $again = $tracker->retrieve($core, 'test2');
+        $this->assertEquals($java->deleted, $again->deleted);
+
+        // Clean up after ourselves:
+        $tracker->delete(['core' => $core]);
+    }
 }